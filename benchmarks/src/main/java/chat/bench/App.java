@@ -0,0 +1,181 @@
+package chat.bench;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+import javax.swing.text.AttributeSet;
+
+// Accès aux classes de l'application, compilées dans le paquet par défaut: JMH refuse les
+// benchmarks sans paquet et un paquet nommé ne peut pas importer le paquet par défaut.
+// Les recherches réflexives sont faites une fois; seuls les appels restent dans les mesures.
+final class App {
+
+    static final Class<?> CHAT_MESSAGE = load("ChatMessage");
+    static final Class<?> CHAT_CLIENT = load("ChatClient");
+    static final Class<?> CHAT_SERVER = load("ChatServer");
+    static final Class<?> CHAT_SERVER_IMPL = load("ChatServerImpl");
+    static final Class<?> TRANSCRIPT_ENTRY = load("ChatTranscript$Entry");
+    static final Class<?> TRANSCRIPT_DOCUMENT = load("TranscriptDocument");
+    static final Class<?> CHAT_PROTOCOL = load("ChatProtocol");
+    static final Class<?> SEARCH_INDEX = load("SearchIndex");
+
+    private static final Method PUBLIC_MESSAGE = method(CHAT_MESSAGE, "publicMessage", String.class, String.class, long.class);
+    private static final Method PRIVATE_MESSAGE = method(CHAT_MESSAGE, "privateMessage", String.class, String.class, String.class, long.class);
+    private static final Method TO_LEGACY_STRING = method(CHAT_MESSAGE, "toLegacyString");
+    private static final Method FROM_LEGACY = method(CHAT_MESSAGE, "fromLegacy", String.class);
+    private static final Method REGISTER_CLIENT = method(CHAT_SERVER, "registerClient", String.class, CHAT_CLIENT);
+    private static final Method SEND_CHAT_MESSAGE = method(CHAT_SERVER, "sendChatMessage", CHAT_MESSAGE);
+    private static final Method SHUTDOWN = method(CHAT_SERVER_IMPL, "shutdown");
+    private static final Method APPEND_ENTRIES = method(TRANSCRIPT_DOCUMENT, "appendEntries", List.class);
+    private static final Method WRITE_MESSAGES = method(CHAT_PROTOCOL, "writeMessages", DataOutput.class, List.class);
+    private static final Method READ_MESSAGES = method(CHAT_PROTOCOL, "readMessages", DataInput.class);
+    private static final Method INDEX_ADD_ALL = method(SEARCH_INDEX, "addAll", String.class, List.class);
+    private static final Method INDEX_SEARCH = method(SEARCH_INDEX, "search", String.class);
+    private static final Method INDEX_CLOSE = method(SEARCH_INDEX, "close");
+
+    private App() {
+    }
+
+    static Object publicMessage(String sender, String body, long lamportTime) {
+        return invoke(PUBLIC_MESSAGE, null, sender, body, lamportTime);
+    }
+
+    static Object privateMessage(String sender, String recipient, String body, long lamportTime) {
+        return invoke(PRIVATE_MESSAGE, null, sender, recipient, body, lamportTime);
+    }
+
+    static String toLegacyString(Object message) {
+        return (String) invoke(TO_LEGACY_STRING, message);
+    }
+
+    static Object fromLegacy(String text) {
+        return invoke(FROM_LEGACY, null, text);
+    }
+
+    static Object newServer(ExecutorService deliveryExecutor) {
+        try {
+            // Sans journal: on mesure la distribution, pas les écritures disque
+            Constructor<?> constructor = CHAT_SERVER_IMPL.getConstructor(ExecutorService.class, load("MessageLog"));
+            return constructor.newInstance(deliveryExecutor, null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static void shutdown(Object server) {
+        invoke(SHUTDOWN, server);
+    }
+
+    static void registerClient(Object server, String name, Object client) {
+        invoke(REGISTER_CLIENT, server, name, client);
+    }
+
+    static void sendChatMessage(Object server, Object message) {
+        invoke(SEND_CHAT_MESSAGE, server, message);
+    }
+
+    // ChatClient en mémoire: chaque lot reçu par receiveChatMessages est passé à onBatch,
+    // les autres callbacks (présence, salons) sont ignorés
+    static Object client(Consumer<List<?>> onBatch) {
+        return Proxy.newProxyInstance(CHAT_CLIENT.getClassLoader(), new Class<?>[] {CHAT_CLIENT}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "receiveChatMessages":
+                    onBatch.accept((List<?>) args[0]);
+                    return null;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return "BenchClient@" + Integer.toHexString(System.identityHashCode(proxy));
+                default:
+                    return null;
+            }
+        });
+    }
+
+    static Object newTranscriptDocument() {
+        try {
+            return TRANSCRIPT_DOCUMENT.getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static Object newEntry(String timestamp, String message, AttributeSet timestampAttrs, AttributeSet messageAttrs) {
+        try {
+            return TRANSCRIPT_ENTRY.getConstructor(String.class, String.class, AttributeSet.class, AttributeSet.class)
+                    .newInstance(timestamp, message, timestampAttrs, messageAttrs);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static void appendEntries(Object document, List<?> entries) {
+        invoke(APPEND_ENTRIES, document, entries);
+    }
+
+    static void writeMessages(DataOutput out, List<?> messages) {
+        invoke(WRITE_MESSAGES, null, out, messages);
+    }
+
+    static List<?> readMessages(DataInput in) {
+        return (List<?>) invoke(READ_MESSAGES, null, in);
+    }
+
+    static Object newSearchIndex(int maxPerRoom) {
+        try {
+            return SEARCH_INDEX.getConstructor(int.class).newInstance(maxPerRoom);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static void indexAll(Object index, String room, List<?> entries) {
+        invoke(INDEX_ADD_ALL, index, room, entries);
+    }
+
+    // Attend le résultat: la mesure comprend le passage par le thread de l'index
+    static List<?> search(Object index, String query) {
+        return (List<?>) ((CompletableFuture<?>) invoke(INDEX_SEARCH, index, query)).join();
+    }
+
+    static void closeSearchIndex(Object index) {
+        invoke(INDEX_CLOSE, index);
+    }
+
+    private static Class<?> load(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Classe de l'application introuvable: " + name, e);
+        }
+    }
+
+    private static Method method(Class<?> type, String name, Class<?>... parameterTypes) {
+        try {
+            return type.getMethod(name, parameterTypes);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Object invoke(Method method, Object target, Object... args) {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IllegalStateException(cause);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
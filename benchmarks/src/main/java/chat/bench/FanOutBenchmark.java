@@ -0,0 +1,79 @@
+package chat.bench;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Débit de diffusion d'un salon selon le nombre de clients: une rafale de messages publics
+// est envoyée au ChatServerImpl, la mesure s'arrête quand chaque client les a tous reçus.
+// Les clients sont des ChatClient en mémoire, sans RMI: seul le chemin serveur est mesuré.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class FanOutBenchmark {
+
+    private static final int BURST = 100;
+    private static final long SETTLE_MS = 500;
+
+    @Param({"10", "100", "1000"})
+    int clients;
+
+    private ExecutorService deliveryExecutor;
+    private Object server;
+    private final AtomicLong delivered = new AtomicLong();
+    private Object[] burst;
+
+    @Setup(Level.Trial)
+    public void setup() throws InterruptedException {
+        deliveryExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        server = App.newServer(deliveryExecutor);
+        for (int i = 0; i < clients; i++) {
+            App.registerClient(server, "bench-" + i, App.client(batch -> delivered.addAndGet(batch.size())));
+        }
+        burst = new Object[BURST];
+        for (int i = 0; i < BURST; i++) {
+            burst[i] = App.publicMessage("bench-0", "message de test " + i, 0);
+        }
+        // Les annonces d'arrivée des clients ne doivent pas compter dans la première rafale
+        Thread.sleep(SETTLE_MS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        App.shutdown(server);
+        deliveryExecutor.shutdownNow();
+    }
+
+    // Résultat en messages publiés par ms; chaque message est livré à tous les clients
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public long broadcastBurst() {
+        long target = delivered.get() + (long) BURST * clients;
+        for (Object message : burst) {
+            App.sendChatMessage(server, message);
+        }
+        while (delivered.get() < target) {
+            LockSupport.parkNanos(20_000);
+        }
+        return target;
+    }
+}
@@ -0,0 +1,75 @@
+package chat.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Recherche dans l'index du client (SearchIndex) selon le nombre de messages indexés. Le
+// vocabulaire suit une loi à queue lourde, comme une discussion: quelques mots très fréquents
+// ("chat") et beaucoup de mots rares. L'objectif est de rester sous 10 ms à un million.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class SearchBenchmark {
+
+    private static final int VOCABULARY = 20_000;
+    private static final int WORDS_PER_MESSAGE = 10;
+
+    @Param({"100000", "1000000"})
+    int messages;
+
+    // Un mot fréquent, deux mots fréquents ensemble, un mot rare avec un fréquent, un mot absent
+    @Param({"chat", "w1 w2", "w3k chat", "absent"})
+    String query;
+
+    private Object index;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        index = App.newSearchIndex(messages);
+        SplittableRandom random = new SplittableRandom(42);
+        List<Object> batch = new ArrayList<>(1000);
+        for (int i = 0; i < messages; i++) {
+            StringBuilder text = new StringBuilder("user").append(i % 50).append(": le chat");
+            for (int k = 0; k < WORDS_PER_MESSAGE; k++) {
+                // Rang du mot ~ 1/u: distribution de Zipf approchée
+                int rank = (int) Math.min(VOCABULARY - 1, 1 / random.nextDouble(0.0005, 1.0));
+                text.append(" w").append(Integer.toString(rank, 36));
+            }
+            batch.add(App.newEntry("14:02:17", text.toString(), null, null));
+            if (batch.size() == 1000) {
+                App.indexAll(index, i % 2 == 0 ? "general" : "dev", batch);
+                batch = new ArrayList<>(1000);
+            }
+        }
+        App.indexAll(index, "general", batch);
+        App.search(index, "attente"); // Rend la main une fois l'indexation terminée
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        App.closeSearchIndex(index);
+    }
+
+    @Benchmark
+    public List<?> search() {
+        return App.search(index, query);
+    }
+}
@@ -0,0 +1,123 @@
+package chat.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Coût d'encodage des charges utiles des appels distants, sans le réseau: RMI crée un
+// ObjectOutputStream par appel, le transport socket écrit les messages avec ChatMessage.writeTo
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SerializationBenchmark {
+
+    // Taille des lots de receiveChatMessages (1 = message isolé, 32 = rafale regroupée)
+    @Param({"1", "32"})
+    int batchSize;
+
+    private String sender;
+    private String body;
+    private Object message;
+    private String legacyText;
+    private List<Object> batch;
+    private byte[] serializedBatch;
+    private byte[] encodedBatch;
+
+    @Setup
+    public void setup() throws IOException {
+        sender = "alice";
+        body = "Salut tout le monde, le déploiement de 14h est terminé 🎉";
+        message = App.publicMessage(sender, body, 42);
+        legacyText = App.toLegacyString(message);
+        batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            batch.add(App.publicMessage(sender, body + " #" + i, 42 + i));
+        }
+        serializedBatch = serialize(batch);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        App.writeMessages(new DataOutputStream(bytes), batch);
+        encodedBatch = bytes.toByteArray();
+    }
+
+    // Arguments de sendMessage(name, message, lamportTime) tels que RMI les écrit
+    @Benchmark
+    public int rmiSendMessageArgs() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(sender);
+            out.writeObject(body);
+            out.writeInt(42);
+        }
+        return bytes.size();
+    }
+
+    // Ancien callback receiveMessage: formatage texte puis sérialisation de la chaîne
+    @Benchmark
+    public int rmiReceiveMessageLegacy() throws IOException {
+        return serialize(App.toLegacyString(message)).length;
+    }
+
+    @Benchmark
+    public int rmiSendChatMessage() throws IOException {
+        return serialize(message).length;
+    }
+
+    @Benchmark
+    public int rmiReceiveChatMessages() throws IOException {
+        return serialize(batch).length;
+    }
+
+    @Benchmark
+    public Object rmiReceiveChatMessagesDecode() throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serializedBatch))) {
+            return in.readObject();
+        }
+    }
+
+    // Décodage d'une ligne reçue d'un ancien serveur (appendMessage)
+    @Benchmark
+    public Object legacyDecode() {
+        return App.fromLegacy(legacyText);
+    }
+
+    @Benchmark
+    public int socketEncodeBatch() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        App.writeMessages(new DataOutputStream(bytes), batch);
+        return bytes.size();
+    }
+
+    @Benchmark
+    public List<?> socketDecodeBatch() {
+        return App.readMessages(new DataInputStream(new ByteArrayInputStream(encodedBatch)));
+    }
+
+    private static byte[] serialize(Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,76 @@
+package chat.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.SimpleAttributeSet;
+import javax.swing.text.StyleConstants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Insertion dans le document de la discussion selon sa longueur. EnhancedChatGUI.appendMessage
+// finit dans TranscriptDocument.appendEntries, mesuré ici sans fenêtre ni JTextPane: le document
+// seul ne demande pas d'affichage et tourne en mode headless. Chaque insertion retire l'entrée la
+// plus ancienne, comme ChatTranscript une fois sa limite atteinte, pour garder la longueur fixe.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class TranscriptAppendBenchmark {
+
+    private static final String TIMESTAMP = "14:02:17";
+    private static final String TEXT = "alice: le déploiement est terminé, merci à tous 🎉";
+    // "[" + horodatage + "] " + message + "\n", comme ChatTranscript.Entry
+    private static final int ENTRY_LENGTH = TIMESTAMP.length() + 3 + TEXT.length() + 1;
+
+    // Nombre d'entrées déjà affichées
+    @Param({"100", "1000", "10000"})
+    int transcriptLength;
+
+    // Entrées insérées par modification (1 = message isolé, 32 = lot de l'InboundMessageQueue)
+    @Param({"1", "32"})
+    int batchSize;
+
+    private Object document;
+    private List<Object> batch;
+
+    @Setup
+    public void setup() {
+        SimpleAttributeSet timestampAttrs = new SimpleAttributeSet();
+        StyleConstants.setItalic(timestampAttrs, true);
+        SimpleAttributeSet messageAttrs = new SimpleAttributeSet();
+        StyleConstants.setBold(messageAttrs, true);
+
+        document = App.newTranscriptDocument();
+        List<Object> initial = new ArrayList<>(transcriptLength);
+        for (int i = 0; i < transcriptLength; i++) {
+            initial.add(App.newEntry(TIMESTAMP, TEXT, timestampAttrs, messageAttrs));
+        }
+        App.appendEntries(document, initial);
+        batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            batch.add(App.newEntry(TIMESTAMP, TEXT, timestampAttrs, messageAttrs));
+        }
+    }
+
+    @Benchmark
+    public int appendAndTrim() throws BadLocationException {
+        Document doc = (Document) document;
+        App.appendEntries(doc, batch);
+        doc.remove(0, ENTRY_LENGTH * batchSize);
+        return doc.getLength();
+    }
+}
@@ -1,8 +1,38 @@
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.util.ArrayList;
 import java.util.List;
 
 public interface ChatClient extends Remote {
     void receiveMessage(String message) throws RemoteException;
+
+    // Livraison groupée: un seul aller-retour RMI pour plusieurs messages
+    default void receiveMessages(List<String> messages) throws RemoteException {
+        for (String message : messages) {
+            receiveMessage(message);
+        }
+    }
+
+    // Messages structurés (ChatMessage); par défaut, repli sur le format texte
+    default void receiveChatMessages(List<ChatMessage> messages) throws RemoteException {
+        List<String> texts = new ArrayList<>(messages.size());
+        for (ChatMessage message : messages) {
+            texts.add(message.toLegacyString());
+        }
+        receiveMessages(texts);
+    }
+
     void updateUserList(List<String> users) throws RemoteException;
+
+    // Présence incrémentale: seuls les arrivées/départs circulent, avec un numéro de version
+    void updatePresence(List<String> joined, List<String> left, long version) throws RemoteException;
+
+    // Salons dont le client est membre, renvoyés après chaque entrée ou sortie
+    default void updateRooms(List<String> rooms) throws RemoteException {
+    }
+
+    // Liste complète, envoyée à la connexion ou quand le client demande une resynchronisation
+    default void syncUserList(List<String> users, long version) throws RemoteException {
+        updateUserList(users);
+    }
 }
\ No newline at end of file
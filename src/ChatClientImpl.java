@@ -1,13 +1,12 @@
 import java.rmi.RemoteException;
-import java.rmi.server.UnicastRemoteObject;
 import java.util.List;
 
-public class ChatClientImpl extends UnicastRemoteObject implements ChatClient {
+// Exporté par ChatTransport.RMI; le transport socket l'appelle directement
+public class ChatClientImpl implements ChatClient {
 
     private EnhancedChatGUI gui;
 
-    protected ChatClientImpl(EnhancedChatGUI gui) throws RemoteException {
-        super();
+    protected ChatClientImpl(EnhancedChatGUI gui) {
         this.gui = gui;
     }
 
@@ -17,9 +16,34 @@ public class ChatClientImpl extends UnicastRemoteObject implements ChatClient {
         gui.appendMessage(message);
     }
 
+    @Override
+    public void receiveMessages(List<String> messages) throws RemoteException {
+        gui.appendMessages(messages);
+    }
+
+    @Override
+    public void receiveChatMessages(List<ChatMessage> messages) throws RemoteException {
+        gui.appendChatMessages(messages);
+    }
+
     @Override
     public void updateUserList(List<String> users) throws RemoteException {
         // Update user list in GUI
         gui.updateUserList(users);
     }
+
+    @Override
+    public void updatePresence(List<String> joined, List<String> left, long version) throws RemoteException {
+        gui.applyPresenceDelta(joined, left, version);
+    }
+
+    @Override
+    public void syncUserList(List<String> users, long version) throws RemoteException {
+        gui.syncUserList(users, version);
+    }
+
+    @Override
+    public void updateRooms(List<String> rooms) throws RemoteException {
+        gui.updateRooms(rooms);
+    }
 }
\ No newline at end of file
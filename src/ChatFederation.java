@@ -0,0 +1,357 @@
+import java.io.IOException;
+import java.rmi.NoSuchObjectException;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+// Plusieurs ChatServerImpl forment un seul chat. Chaque nœud garde ses propres clients,
+// salons et journal; ce qui doit être global passe par un propriétaire désigné par
+// hachage cohérent (HashRing) sur un ensemble de nœuds fixe, identique sur tous:
+//  - salon "#nom": son propriétaire ordonne les messages publics et les renvoie à tous les
+//    nœuds par des liens FIFO, si bien que chaque nœud les publie dans le même ordre;
+//  - utilisateur: son propriétaire tient l'annuaire nom -> nœud de connexion et sa boîte
+//    hors ligne, et route les messages privés.
+// Les horloges sont fusionnées à chaque réception; -Dchat.clock=hlc garde les horodatages
+// de nœuds différents comparables au temps réel. Présence et annuaire ne suivent que des
+// événements: quand un lien tombe, les clients du pair sont oubliés, et à sa reprise les deux
+// nœuds échangent la liste complète de leurs clients (syncNode).
+public class ChatFederation extends UnicastRemoteObject implements ChatPeer {
+
+    private final String localNode;
+    private final ChatServerImpl server;
+    private final OfflineMailbox mailbox;
+    private final HashRing ring;
+    private final Map<String, PeerLink> links = new LinkedHashMap<>(); // Fixé à la construction
+    // Annuaire des noms dont ce nœud est propriétaire: nom -> nœud où le client est connecté
+    private final ConcurrentHashMap<String, String> locations = new ConcurrentHashMap<>();
+    // Clients des autres nœuds, pour les listes d'utilisateurs envoyées aux clients locaux
+    private final ConcurrentHashMap<String, String> remoteUsers = new ConcurrentHashMap<>();
+    // Un message de salon est publié ici et mis dans les liens sans qu'un autre s'intercale
+    private final Object sequenceLock = new Object();
+
+    private ChatFederation(String localNode, List<String> peers, ChatServerImpl server, OfflineMailbox mailbox)
+            throws RemoteException {
+        super();
+        this.localNode = localNode;
+        this.server = server;
+        this.mailbox = mailbox;
+        List<String> nodes = new ArrayList<>(peers);
+        nodes.add(localNode);
+        this.ring = new HashRing(nodes);
+    }
+
+    // Les liens rappellent la fédération (resynchronisation, panne): créés une fois celle-ci construite
+    public static ChatFederation create(String localNode, List<String> peers, ChatServerImpl server,
+                                        OfflineMailbox mailbox, Executor executor) throws RemoteException {
+        ChatFederation federation = new ChatFederation(localNode, peers, server, mailbox);
+        for (String peer : peers) {
+            federation.links.put(peer, new PeerLink(localNode, peer, executor,
+                    stub -> stub.syncNode(localNode, server.getLocalUsers(), true),
+                    () -> federation.replaceNode(peer, List.of())));
+        }
+        return federation;
+    }
+
+    // Une fois exporté et enregistré sous "ChatPeer": les pairs peuvent répondre
+    public void start() {
+        for (PeerLink link : links.values()) {
+            link.start();
+        }
+    }
+
+    public String getLocalNode() {
+        return localNode;
+    }
+
+    private static String roomKey(String room) {
+        return "#" + room;
+    }
+
+    private PeerLink link(String node) throws RemoteException {
+        PeerLink link = links.get(node);
+        if (link == null) throw new RemoteException("Nœud inconnu de la fédération: " + node);
+        return link;
+    }
+
+    // --- Appelé par le serveur local ---
+
+    // Le message revient au serveur par publishRelayed, sur ce nœud comme sur les autres
+    public void publishToRoom(ChatMessage message) {
+        String owner = ring.ownerOf(roomKey(message.getRoom()));
+        if (owner.equals(localNode)) {
+            sequence(message);
+        } else {
+            links.get(owner).enqueue(peer -> peer.sequenceRoomMessage(message));
+        }
+    }
+
+    public void broadcast(ChatMessage message) {
+        for (PeerLink link : links.values()) {
+            link.enqueue(peer -> peer.relayBroadcast(localNode, message));
+        }
+    }
+
+    public void onLocalJoin(String user) {
+        announce(user, true);
+        for (PeerLink link : links.values()) {
+            link.enqueue(peer -> peer.relayPresence(localNode, List.of(user), List.of()));
+        }
+    }
+
+    public void onLocalLeave(String user) {
+        announce(user, false);
+        for (PeerLink link : links.values()) {
+            link.enqueue(peer -> peer.relayPresence(localNode, List.of(), List.of(user)));
+        }
+    }
+
+    private void announce(String user, boolean online) {
+        String owner = ring.ownerOf(user);
+        if (owner.equals(localNode)) {
+            setLocation(user, localNode, online);
+        } else {
+            links.get(owner).enqueue(peer -> peer.setLocation(user, localNode, online));
+        }
+    }
+
+    // Destinataire absent de ce nœud: la décision revient au propriétaire de son nom
+    public DeliveryResult routeDirect(ChatMessage message) throws RemoteException {
+        String owner = ring.ownerOf(message.getRecipient());
+        ChatMessage unlogged = message.withSeq(0);
+        return owner.equals(localNode)
+                ? routeDirectMessage(unlogged)
+                : link(owner).peer().routeDirectMessage(unlogged);
+    }
+
+    public boolean isOnline(String user) throws RemoteException {
+        String owner = ring.ownerOf(user);
+        return (owner.equals(localNode) ? locate(user) : link(owner).peer().locate(user)) != null;
+    }
+
+    // Réunion des partitions de l'annuaire; un nœud injoignable est omis
+    public List<String> getOnlineUsers() {
+        TreeSet<String> users = new TreeSet<>(locations.keySet());
+        for (PeerLink link : links.values()) {
+            try {
+                users.addAll(link.peer().getOwnedOnlineUsers());
+            } catch (RemoteException e) {
+                System.err.println("Annuaire de " + link.getNode() + " indisponible: " + e.getMessage());
+            }
+        }
+        return new ArrayList<>(users);
+    }
+
+    public List<String> getRemoteUsers() {
+        return new ArrayList<>(remoteUsers.keySet());
+    }
+
+    public void close() {
+        for (PeerLink link : links.values()) {
+            link.close();
+        }
+        try {
+            UnicastRemoteObject.unexportObject(this, true);
+        } catch (NoSuchObjectException e) {
+            // Jamais exporté ou déjà retiré
+        }
+    }
+
+    // --- Appels des autres nœuds ---
+
+    @Override
+    public void sequenceRoomMessage(ChatMessage message) {
+        sequence(message);
+    }
+
+    private void sequence(ChatMessage message) {
+        synchronized (sequenceLock) {
+            ChatMessage stamped = message.withLamportTime(server.mergeClock(message.getLamportTime())).withSeq(0);
+            for (PeerLink link : links.values()) {
+                link.enqueueMessage(stamped);
+            }
+            server.publishRelayed(stamped);
+        }
+    }
+
+    // L'horodatage du propriétaire est gardé tel quel: tous les nœuds affichent le même
+    @Override
+    public void relayMessages(String fromNode, List<ChatMessage> messages) {
+        for (ChatMessage message : messages) {
+            server.mergeClock(message.getLamportTime());
+            server.publishRelayed(message);
+        }
+    }
+
+    @Override
+    public void relayBroadcast(String fromNode, ChatMessage message) {
+        server.mergeClock(message.getLamportTime());
+        server.broadcast(message);
+    }
+
+    @Override
+    public void relayPresence(String fromNode, List<String> joined, List<String> left) {
+        for (String user : joined) {
+            remoteUsers.put(user, fromNode);
+        }
+        for (String user : left) {
+            remoteUsers.remove(user, fromNode);
+        }
+        server.applyRemotePresence(joined, left);
+    }
+
+    @Override
+    public void syncNode(String fromNode, List<String> users, boolean reply) {
+        replaceNode(fromNode, users);
+        PeerLink link = links.get(fromNode);
+        if (reply && link != null) {
+            link.enqueue(peer -> peer.syncNode(localNode, server.getLocalUsers(), false));
+        }
+    }
+
+    // Les clients de node sont exactement users: les autres sont retirés de la présence et de
+    // l'annuaire, les nouveaux ajoutés. Un nom déjà annoncé sur un autre nœud n'est pas repris.
+    private void replaceNode(String node, List<String> users) {
+        Set<String> current = new HashSet<>(users);
+        List<String> joined = new ArrayList<>();
+        List<String> left = new ArrayList<>();
+        for (Map.Entry<String, String> entry : remoteUsers.entrySet()) {
+            String user = entry.getKey();
+            if (!current.contains(user) && remoteUsers.remove(user, node)) {
+                left.add(user);
+            }
+        }
+        for (String user : users) {
+            if (!node.equals(remoteUsers.put(user, node))) {
+                joined.add(user);
+            }
+        }
+        for (Map.Entry<String, String> entry : locations.entrySet()) {
+            if (!current.contains(entry.getKey())) {
+                locations.remove(entry.getKey(), node);
+            }
+        }
+        for (String user : users) {
+            String known = locations.get(user);
+            if (ring.ownerOf(user).equals(localNode) && (known == null || known.equals(node))) {
+                setLocation(user, node, true);
+            }
+        }
+        if (!joined.isEmpty() || !left.isEmpty()) {
+            server.applyRemotePresence(joined, left);
+        }
+    }
+
+    // Un départ n'efface que la connexion qu'il annonce: celle d'un autre nœud, plus
+    // récente, a pu arriver avant lui
+    @Override
+    public void setLocation(String user, String node, boolean online) {
+        if (!online) {
+            locations.remove(user, node);
+            return;
+        }
+        locations.put(user, node);
+        try {
+            mailbox.markKnown(user);
+        } catch (IOException e) {
+            System.err.println("Échec de l'écriture dans la boîte hors ligne: " + e.getMessage());
+        }
+        flushMailbox(user, node);
+    }
+
+    @Override
+    public String locate(String user) {
+        return locations.get(user);
+    }
+
+    @Override
+    public List<String> getOwnedOnlineUsers() {
+        return new ArrayList<>(locations.keySet());
+    }
+
+    @Override
+    public DeliveryResult routeDirectMessage(ChatMessage message) throws RemoteException {
+        String user = message.getRecipient();
+        String node = locations.get(user);
+        if (node != null && deliverTo(node, user, List.of(message))) {
+            return DeliveryResult.DELIVERED;
+        }
+        if (node == null && !mailbox.isKnown(user)) {
+            return DeliveryResult.UNKNOWN_USER;
+        }
+        try {
+            mailbox.store(user, message);
+        } catch (IOException e) {
+            throw new RemoteException("Boîte hors ligne indisponible", e);
+        }
+        // Connecté entre la recherche et le dépôt: son annonce a pu vider la boîte avant nous
+        String arrived = locations.get(user);
+        if (arrived != null) {
+            flushMailbox(user, arrived);
+        }
+        return DeliveryResult.QUEUED_OFFLINE;
+    }
+
+    @Override
+    public boolean deliverLocal(String user, List<ChatMessage> messages) {
+        return server.deliverLocal(user, messages);
+    }
+
+    // Un nœud injoignable équivaut à un destinataire déconnecté
+    private boolean deliverTo(String node, String user, List<ChatMessage> messages) throws RemoteException {
+        if (node.equals(localNode)) {
+            return server.deliverLocal(user, messages);
+        }
+        try {
+            return link(node).peer().deliverLocal(user, messages);
+        } catch (RemoteException e) {
+            if (!RmiCompat.isConnectionFailure(e)) throw e;
+            return false;
+        }
+    }
+
+    // Remise en bloc au nœud de connexion; si le client en est déjà reparti, retour à la boîte
+    private void flushMailbox(String user, String node) {
+        List<ChatMessage> messages;
+        try {
+            messages = mailbox.drain(user);
+        } catch (IOException e) {
+            System.err.println("Lecture de la boîte hors ligne impossible pour " + user + ": " + e.getMessage());
+            return;
+        }
+        if (messages.isEmpty()) return;
+        if (node.equals(localNode)) {
+            if (!server.deliverLocal(user, messages)) {
+                restore(user, messages);
+            }
+            return;
+        }
+        PeerLink link = links.get(node);
+        if (link == null) {
+            restore(user, messages);
+            return;
+        }
+        link.enqueue(peer -> {
+            if (!peer.deliverLocal(user, messages)) {
+                restore(user, messages);
+            }
+        });
+    }
+
+    private void restore(String user, List<ChatMessage> messages) {
+        try {
+            for (ChatMessage message : messages) {
+                mailbox.store(user, message);
+            }
+        } catch (IOException e) {
+            System.err.println("Messages hors ligne perdus pour " + user + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,234 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.nio.charset.StandardCharsets;
+
+// Enveloppe d'un message: les métadonnées (émetteur, horloge de Lamport, nature)
+// voyagent dans des champs typés au lieu d'être encodées dans le texte.
+// Externalizable pour un format binaire compact, sans description de classe par champ.
+public class ChatMessage implements Externalizable {
+
+    private static final long serialVersionUID = 1L;
+
+    // Salon par défaut, rejoint par tout client à son enregistrement
+    public static final String DEFAULT_ROOM = "general";
+
+    private MessageKind kind;
+    private long lamportTime;
+    private String sender;    // null pour un message système
+    private String recipient; // renseigné uniquement pour un message privé
+    private String body;
+    private long clientMessageId; // Attribué par l'émetteur pour reconnaître l'écho de son message (0 = aucun)
+    private String room;          // Salon d'un message public (null = salon par défaut)
+    private long seq;             // Numéro attribué par le journal du serveur (0 = non journalisé)
+
+    // Requis par Externalizable
+    public ChatMessage() {
+    }
+
+    public ChatMessage(MessageKind kind, long lamportTime, String sender, String recipient, String body) {
+        this.kind = kind;
+        this.lamportTime = lamportTime;
+        this.sender = sender;
+        this.recipient = recipient;
+        this.body = body;
+    }
+
+    public static ChatMessage publicMessage(String sender, String body, long lamportTime) {
+        return new ChatMessage(MessageKind.PUBLIC, lamportTime, sender, null, body);
+    }
+
+    public static ChatMessage privateMessage(String sender, String recipient, String body, long lamportTime) {
+        return new ChatMessage(MessageKind.PRIVATE, lamportTime, sender, recipient, body);
+    }
+
+    public static ChatMessage systemMessage(String body, long lamportTime) {
+        return new ChatMessage(MessageKind.SYSTEM, lamportTime, null, null, body);
+    }
+
+    public MessageKind getKind() {
+        return kind;
+    }
+
+    public long getLamportTime() {
+        return lamportTime;
+    }
+
+    public String getSender() {
+        return sender;
+    }
+
+    public String getRecipient() {
+        return recipient;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    public long getClientMessageId() {
+        return clientMessageId;
+    }
+
+    public String getRoom() {
+        return room != null ? room : DEFAULT_ROOM;
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    public ChatMessage withLamportTime(long time) {
+        ChatMessage copy = copy();
+        copy.lamportTime = time;
+        return copy;
+    }
+
+    public ChatMessage withClientMessageId(long id) {
+        ChatMessage copy = copy();
+        copy.clientMessageId = id;
+        return copy;
+    }
+
+    public ChatMessage withRoom(String room) {
+        ChatMessage copy = copy();
+        copy.room = DEFAULT_ROOM.equals(room) ? null : room;
+        return copy;
+    }
+
+    public ChatMessage withSeq(long seq) {
+        ChatMessage copy = copy();
+        copy.seq = seq;
+        return copy;
+    }
+
+    private ChatMessage copy() {
+        ChatMessage copy = new ChatMessage(kind, lamportTime, sender, recipient, body);
+        copy.clientMessageId = clientMessageId;
+        copy.room = room;
+        copy.seq = seq;
+        return copy;
+    }
+
+    // Format texte historique, pour les clients qui ne connaissent que receiveMessage(String)
+    public String toLegacyString() {
+        switch (kind) {
+            case SYSTEM:
+                return "=== " + body + " ===";
+            case PRIVATE:
+                return sender == null
+                        ? "[PRIVATE] " + body
+                        : "[PRIVATE] " + sender + " -> " + recipient + ": " + body;
+            default:
+                return sender == null ? body : "[" + lamportTime + "] " + sender + ": " + body;
+        }
+    }
+
+    // Décodage du format texte, utilisé seulement face à un serveur qui n'envoie que des String
+    public static ChatMessage fromLegacy(String text) {
+        if (text.startsWith("===")) {
+            String body = text.endsWith("===") && text.length() >= 6
+                    ? text.substring(3, text.length() - 3).trim()
+                    : text.substring(3).trim();
+            return systemMessage(body, 0);
+        }
+        if (text.startsWith("[PRIVATE] ")) {
+            String rest = text.substring("[PRIVATE] ".length());
+            int arrow = rest.indexOf(" -> ");
+            int colon = rest.indexOf(": ", arrow + 1);
+            if (arrow > 0 && colon > arrow) {
+                return privateMessage(rest.substring(0, arrow), rest.substring(arrow + 4, colon),
+                        rest.substring(colon + 2), 0);
+            }
+            return privateMessage(null, null, rest, 0);
+        }
+
+        long time = 0;
+        String rest = text;
+        if (text.startsWith("[")) {
+            int endIdx = text.indexOf("] ");
+            if (endIdx > 1) {
+                try {
+                    time = Long.parseLong(text.substring(1, endIdx));
+                    rest = text.substring(endIdx + 2);
+                } catch (NumberFormatException e) {
+                    // Pas une horloge de Lamport: le texte est gardé tel quel
+                }
+            }
+        }
+        int colon = rest.indexOf(": ");
+        if (colon > 0) {
+            return publicMessage(rest.substring(0, colon), rest.substring(colon + 2), time);
+        }
+        return publicMessage(null, rest, time);
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        writeTo(out);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        readFields(in);
+    }
+
+    // Encodage binaire partagé par la sérialisation RMI et les autres supports
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeByte(kind.ordinal());
+        out.writeLong(lamportTime);
+        writeString(out, sender);
+        writeString(out, recipient);
+        writeString(out, body);
+        out.writeLong(clientMessageId);
+        writeString(out, room);
+        out.writeLong(seq);
+    }
+
+    public static ChatMessage readFrom(DataInput in) throws IOException {
+        ChatMessage message = new ChatMessage();
+        message.readFields(in);
+        return message;
+    }
+
+    private void readFields(DataInput in) throws IOException {
+        kind = MessageKind.fromCode(in.readByte());
+        lamportTime = in.readLong();
+        sender = readString(in);
+        recipient = readString(in);
+        body = readString(in);
+        clientMessageId = in.readLong();
+        room = readString(in);
+        seq = in.readLong();
+    }
+
+    // Longueur puis octets UTF-8 (-1 pour null); contrairement à writeUTF, pas de limite à 64 Ko
+    static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) return null;
+        if (length > ChatProtocol.remaining(in)) {
+            throw new IOException("Longueur de chaîne invalide: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        return toLegacyString();
+    }
+}
@@ -0,0 +1,28 @@
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.util.List;
+
+// Liaison entre les nœuds d'une fédération (ChatFederation), enregistrée sous "ChatPeer" dans
+// le registre RMI de chaque nœud. Les appels sans résultat passent par la file d'un PeerLink:
+// un nœud les reçoit d'un même pair dans l'ordre d'émission.
+public interface ChatPeer extends Remote {
+    // Message public à ordonner: appelé sur le nœud propriétaire de son salon
+    void sequenceRoomMessage(ChatMessage message) throws RemoteException;
+    // Messages de salon dans l'ordre fixé par leur propriétaire, et annonces à tout le chat
+    void relayMessages(String fromNode, List<ChatMessage> messages) throws RemoteException;
+    // Annonce à tous les clients du nœud (arrivée ou départ d'un utilisateur)
+    void relayBroadcast(String fromNode, ChatMessage message) throws RemoteException;
+    // Arrivées et départs des clients de fromNode, pour les listes d'utilisateurs affichées
+    void relayPresence(String fromNode, List<String> joined, List<String> left) throws RemoteException;
+    // Tous les clients de fromNode, envoyés à la (re)connexion du lien: remplacent ce que le
+    // nœud en savait (présence et annuaire). reply: renvoyer les siens, fromNode a pu redémarrer
+    void syncNode(String fromNode, List<String> users, boolean reply) throws RemoteException;
+    // Annuaire partitionné: les trois appels suivants vont au nœud propriétaire du nom
+    void setLocation(String user, String node, boolean online) throws RemoteException;
+    // Nœud où le client est connecté, ou null
+    String locate(String user) throws RemoteException;
+    List<String> getOwnedOnlineUsers() throws RemoteException;
+    DeliveryResult routeDirectMessage(ChatMessage message) throws RemoteException;
+    // Remise aux clients connectés à ce nœud; false si le destinataire n'y est plus
+    boolean deliverLocal(String user, List<ChatMessage> messages) throws RemoteException;
+}
@@ -0,0 +1,177 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Format binaire du transport par socket. Une trame: [longueur][opération][identifiant d'appel][données].
+// Le client numérote ses requêtes, le serveur répond par une trame RESPONSE portant le même
+// identifiant; les callbacks du serveur vers le client utilisent l'identifiant 0 et n'ont pas de réponse.
+// Les messages sont encodés par ChatMessage.writeTo, comme pour la sérialisation RMI.
+public final class ChatProtocol {
+
+    // Taille max d'une trame: protège le lecteur d'une longueur corrompue
+    public static final int MAX_FRAME_BYTES = Integer.getInteger("chat.socket.maxFrameBytes", 16 * 1024 * 1024);
+    // Côté serveur, par connexion: une requête (au plus un lot d'envoi) est bien plus petite
+    // qu'une réponse d'historique, et la longueur vient d'un client non fiable
+    public static final int MAX_REQUEST_BYTES = Integer.getInteger("chat.socket.maxRequestBytes", 1024 * 1024);
+
+    // Requêtes du client (méthodes de ChatServer)
+    public static final byte SEND_MESSAGE = 1;
+    public static final byte SEND_CHAT_MESSAGE = 2;
+    public static final byte SEND_CHAT_MESSAGES = 3;
+    public static final byte REGISTER_CLIENT = 4;
+    public static final byte UNREGISTER_CLIENT = 5;
+    public static final byte GET_ONLINE_USERS = 6;
+    public static final byte SEND_PRIVATE_MESSAGE = 7;
+    public static final byte IS_USER_ONLINE = 8;
+    public static final byte REQUEST_USER_LIST_SYNC = 9;
+    public static final byte JOIN_ROOM = 10;
+    public static final byte LEAVE_ROOM = 11;
+    public static final byte GET_ROOMS = 12;
+    public static final byte GET_HISTORY = 13;
+    public static final byte OPEN_SESSION = 14;
+    public static final byte RESUME_SESSION = 15;
+    public static final byte HEARTBEAT = 16;
+    public static final byte SEND_DIRECT_MESSAGE = 17;
+
+    // Réponse: [statut][valeur de retour ou message d'erreur]
+    public static final byte RESPONSE = 64;
+    public static final byte STATUS_OK = 0;
+    public static final byte STATUS_ERROR = 1;
+    public static final byte STATUS_UNSUPPORTED = 2;
+
+    // Callbacks du serveur (méthodes de ChatClient)
+    public static final byte RECEIVE_MESSAGE = 65;
+    public static final byte RECEIVE_MESSAGES = 66;
+    public static final byte RECEIVE_CHAT_MESSAGES = 67;
+    public static final byte UPDATE_USER_LIST = 68;
+    public static final byte UPDATE_PRESENCE = 69;
+    public static final byte SYNC_USER_LIST = 70;
+    public static final byte UPDATE_ROOMS = 71;
+
+    public interface Payload {
+        void write(DataOutput out) throws IOException;
+    }
+
+    public static final Payload EMPTY = out -> { };
+
+    // Trame reçue; data se lit avec les méthodes read* ci-dessous
+    public static final class Frame {
+        public final byte op;
+        public final int callId;
+        public final DataInput data;
+
+        Frame(byte op, int callId, DataInput data) {
+            this.op = op;
+            this.callId = callId;
+            this.data = data;
+        }
+    }
+
+    // Données d'une trame: les longueurs et nombres d'éléments annoncés sont bornés par ce
+    // qui reste réellement à lire, avant toute allocation
+    public static final class FrameInput extends DataInputStream {
+        FrameInput(byte[] bytes) {
+            super(new ByteArrayInputStream(bytes));
+        }
+
+        public int remaining() throws IOException {
+            return in.available();
+        }
+    }
+
+    private ChatProtocol() {
+    }
+
+    // L'appelant sérialise les écritures sur out (un verrou par connexion)
+    public static void writeFrame(DataOutputStream out, byte op, int callId, Payload payload) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(64);
+        DataOutputStream body = new DataOutputStream(buffer);
+        body.writeByte(op);
+        body.writeInt(callId);
+        payload.write(body);
+        out.writeInt(buffer.size());
+        buffer.writeTo(out);
+        out.flush();
+    }
+
+    public static Frame readFrame(DataInputStream in) throws IOException {
+        return readFrame(in, MAX_FRAME_BYTES);
+    }
+
+    public static Frame readFrame(DataInputStream in, int maxBytes) throws IOException {
+        int length = in.readInt();
+        if (length < 5 || length > maxBytes) {
+            throw new IOException("Trame invalide (" + length + " octets)");
+        }
+        // Lu par morceaux: la mémoire suit les octets reçus, pas la longueur annoncée
+        byte[] bytes = in.readNBytes(length);
+        if (bytes.length < length) {
+            throw new EOFException("Trame tronquée (" + bytes.length + "/" + length + " octets)");
+        }
+        FrameInput body = new FrameInput(bytes);
+        byte op = body.readByte();
+        int callId = body.readInt();
+        return new Frame(op, callId, body);
+    }
+
+    public static void writeString(DataOutput out, String value) throws IOException {
+        ChatMessage.writeString(out, value);
+    }
+
+    public static String readString(DataInput in) throws IOException {
+        return ChatMessage.readString(in);
+    }
+
+    public static void writeStrings(DataOutput out, List<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            ChatMessage.writeString(out, value);
+        }
+    }
+
+    public static List<String> readStrings(DataInput in) throws IOException {
+        int count = readCount(in);
+        List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(ChatMessage.readString(in));
+        }
+        return values;
+    }
+
+    public static void writeMessages(DataOutput out, List<ChatMessage> messages) throws IOException {
+        out.writeInt(messages.size());
+        for (ChatMessage message : messages) {
+            message.writeTo(out);
+        }
+    }
+
+    public static List<ChatMessage> readMessages(DataInput in) throws IOException {
+        int count = readCount(in);
+        List<ChatMessage> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            messages.add(ChatMessage.readFrom(in));
+        }
+        return messages;
+    }
+
+    // Chaque élément occupe au moins un octet: un nombre supérieur aux octets restants est faux
+    private static int readCount(DataInput in) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > remaining(in)) {
+            throw new IOException("Nombre d'éléments invalide: " + count);
+        }
+        return count;
+    }
+
+    // Octets encore lisibles; hors trame (RMI, fichiers) seule la taille max d'une trame borne
+    static int remaining(DataInput in) throws IOException {
+        return in instanceof FrameInput ? ((FrameInput) in).remaining() : MAX_FRAME_BYTES;
+    }
+}
@@ -0,0 +1,63 @@
+import java.util.Arrays;
+
+// Index des membres d'un salon pour la diffusion: tableau copié à chaque entrée ou
+// sortie (rares), parcouru sans verrou à chaque message (fréquent).
+public class ChatRoom {
+
+    private final String name;
+    private volatile ClientDelivery[] members = new ClientDelivery[0];
+
+    public ChatRoom(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    // Tableau partagé: à parcourir, pas à modifier
+    public ClientDelivery[] getMembers() {
+        return members;
+    }
+
+    public boolean isEmpty() {
+        return members.length == 0;
+    }
+
+    public synchronized boolean add(ClientDelivery delivery) {
+        ClientDelivery[] current = members;
+        for (ClientDelivery member : current) {
+            if (member == delivery) return false;
+        }
+        ClientDelivery[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = delivery;
+        members = updated;
+        return true;
+    }
+
+    public synchronized boolean remove(ClientDelivery delivery) {
+        ClientDelivery[] current = members;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == delivery) {
+                ClientDelivery[] updated = new ClientDelivery[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                members = updated;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Reconnexion sous le même nom: la nouvelle livraison prend la place de l'ancienne
+    public synchronized void replace(ClientDelivery previous, ClientDelivery delivery) {
+        ClientDelivery[] updated = members.clone();
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == previous) {
+                updated[i] = delivery;
+                members = updated;
+                return;
+            }
+        }
+    }
+}
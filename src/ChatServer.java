@@ -4,9 +4,32 @@ import java.util.List;
 
 public interface ChatServer extends Remote {
     void sendMessage(String name, String message,int clientLamportTime) throws RemoteException;
+    // Envoi structuré: le serveur réattribue l'horloge de Lamport et route selon message.getKind()
+    void sendChatMessage(ChatMessage message) throws RemoteException;
+    // Plusieurs messages d'un même client en un seul appel, traités dans l'ordre de la liste
+    void sendChatMessages(List<ChatMessage> messages) throws RemoteException;
     void registerClient(String name, ChatClient client) throws RemoteException;
+    // registerClient avec ouverture d'une session: le jeton renvoyé permet une reprise par resumeSession
+    long openSession(String name, ChatClient client) throws RemoteException;
+    // Reprise après une coupure: réinscrit le client dans ses salons et renvoie seulement les
+    // messages de numéro > lastSeq. false si la session est inconnue ou expirée (openSession)
+    boolean resumeSession(String name, long token, long lastSeq, ChatClient client) throws RemoteException;
     void unregisterClient(String name) throws RemoteException;
     List<String> getOnlineUsers() throws RemoteException;
     void sendPrivateMessage(String fromUser, String toUser, String message) throws RemoteException;
+    // Message privé en un seul aller-retour, sans passer par isUserOnline: remis au destinataire,
+    // conservé jusqu'à sa prochaine connexion, ou refusé si le nom n'a jamais été enregistré
+    DeliveryResult sendDirectMessage(ChatMessage message) throws RemoteException;
     boolean isUserOnline(String username) throws RemoteException;
+    // Renouvelle le bail du client; false s'il n'est plus enregistré (à reprendre par resumeSession)
+    boolean heartbeat(String name) throws RemoteException;
+    // Demande l'envoi d'une liste complète (syncUserList) après un trou dans les versions de présence
+    void requestUserListSync(String name) throws RemoteException;
+    // Salons: un message public n'est diffusé qu'aux membres de son salon (ChatMessage.getRoom())
+    void joinRoom(String name, String room) throws RemoteException;
+    void leaveRoom(String name, String room) throws RemoteException;
+    List<String> getRooms() throws RemoteException;
+    // Historique d'un salon par pages: au plus limit messages de numéro >= fromSeq,
+    // ou les limit derniers si fromSeq <= 0 (voir ChatMessage.getSeq())
+    List<ChatMessage> getHistory(String room, long fromSeq, int limit) throws RemoteException;
 }
\ No newline at end of file
@@ -0,0 +1,764 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Paths;
+import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.RMISocketFactory;
+import java.rmi.server.UnicastRemoteObject;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.ObjectName;
+
+// Implémentation de référence du serveur: sendMessage ne fait que mettre en file,
+// chaque client a sa propre ClientDelivery exécutée sur des threads virtuels,
+// qui regroupe les messages en attente en un seul callback receiveMessages.
+public class ChatServerImpl extends UnicastRemoteObject implements ChatServer {
+
+    private final ClientRegistry clients = new ClientRegistry();
+    private final ConcurrentHashMap<String, ChatRoom> rooms = new ConcurrentHashMap<>();
+    private final ExecutorService deliveryExecutor;
+    // Déclenche les livraisons différées qui laissent les lots de messages se remplir
+    private final ScheduledExecutorService coalesceTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "chat-coalesce-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final LogicalClock clock = LogicalClock.create();
+    // Les deltas de présence sont numérotés et mis en file sous ce verrou,
+    // pour que chaque client les reçoive dans l'ordre des versions
+    private final Object presenceLock = new Object();
+    private final AtomicLong presenceVersion = new AtomicLong(0);
+    // Journal des messages des salons et des messages privés (null = pas de persistance)
+    private final MessageLog log;
+    private final ServerMetrics metrics = new ServerMetrics(clients);
+    // Messages privés des destinataires déconnectés, et noms déjà enregistrés au moins une fois
+    private final OfflineMailbox mailbox;
+    // Autres nœuds du même chat (null = serveur seul)
+    private volatile ChatFederation federation;
+
+    private static final int MAX_HISTORY_PAGE = 500;
+    // Messages manqués renvoyés au plus, par salon, lors d'une reprise de session
+    private static final int MAX_REPLAY = Integer.getInteger("chat.session.maxReplay", 2000);
+    // Durée pendant laquelle une session coupée peut être reprise
+    private static final long SESSION_GRACE_MS = Long.getLong("chat.session.graceMs", 60_000);
+
+    // Session d'un client: jeton de reprise et salons au moment de la coupure
+    private static final class Session {
+        final long token;
+        volatile List<String> detachedRooms = List.of();
+        volatile long detachedAtMillis = 0; // 0 = client connecté
+
+        Session(long token) {
+            this.token = token;
+        }
+
+        boolean isExpired(long now) {
+            return detachedAtMillis != 0 && now - detachedAtMillis > SESSION_GRACE_MS;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>();
+
+    // Bail d'un client qui envoie des heartbeats: sans renouvellement dans ce délai, il est retiré
+    private static final long LEASE_MS = Long.getLong("chat.lease.durationMs", 15_000);
+    private static final long LEASE_CHECK_MS = Math.max(100, LEASE_MS / 3);
+    private final SecureRandom tokenSource = new SecureRandom();
+    private static final long LOG_FLUSH_INTERVAL_MS = Long.getLong("chat.log.flushIntervalMs", 1000);
+
+    public ChatServerImpl() throws RemoteException {
+        this(Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    public ChatServerImpl(ExecutorService deliveryExecutor) throws RemoteException {
+        this(deliveryExecutor, null);
+    }
+
+    public ChatServerImpl(ExecutorService deliveryExecutor, MessageLog log) throws RemoteException {
+        this(deliveryExecutor, log, new MemoryMailbox());
+    }
+
+    public ChatServerImpl(ExecutorService deliveryExecutor, MessageLog log, OfflineMailbox mailbox) throws RemoteException {
+        super();
+        this.deliveryExecutor = deliveryExecutor;
+        this.log = log;
+        this.mailbox = mailbox;
+    }
+
+    // Tâches périodiques (vidage du journal, sessions et baux expirés), lancées une fois le
+    // serveur entièrement construit
+    public void start() {
+        if (log != null) {
+            coalesceTimer.scheduleWithFixedDelay(log::flush, LOG_FLUSH_INTERVAL_MS, LOG_FLUSH_INTERVAL_MS,
+                    TimeUnit.MILLISECONDS);
+        }
+        coalesceTimer.scheduleWithFixedDelay(this::flushMailboxStore, LOG_FLUSH_INTERVAL_MS, LOG_FLUSH_INTERVAL_MS,
+                TimeUnit.MILLISECONDS);
+        coalesceTimer.scheduleAtFixedRate(metrics::sample, 1, 1, TimeUnit.SECONDS);
+        coalesceTimer.scheduleWithFixedDelay(this::expireSessions, SESSION_GRACE_MS, SESSION_GRACE_MS,
+                TimeUnit.MILLISECONDS);
+        coalesceTimer.scheduleWithFixedDelay(this::evictExpiredLeases, LEASE_CHECK_MS, LEASE_CHECK_MS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void sendMessage(String name, String message, int clientLamportTime) throws RemoteException {
+        sendChatMessage(ChatMessage.publicMessage(name, message, clientLamportTime));
+    }
+
+    @Override
+    public void sendChatMessage(ChatMessage message) throws RemoteException {
+        metrics.onMessageReceived();
+        ChatMessage stamped = message.withLamportTime(mergeClock(message.getLamportTime()));
+        switch (stamped.getKind()) {
+            case PRIVATE:
+                notifyPrivateResult(stamped, routePrivate(stamped));
+                break;
+            case PUBLIC:
+                routeToRoom(stamped);
+                break;
+            default:
+                // Les messages système ne sont émis que par le serveur
+                break;
+        }
+    }
+
+    @Override
+    public void sendChatMessages(List<ChatMessage> messages) throws RemoteException {
+        for (ChatMessage message : messages) {
+            sendChatMessage(message);
+        }
+    }
+
+    @Override
+    public void registerClient(String name, ChatClient client) throws RemoteException {
+        ClientDelivery delivery = newDelivery(name, client);
+        synchronized (presenceLock) {
+            ClientDelivery previous = attach(delivery);
+            if (previous != null) {
+                for (String room : previous.getRooms()) {
+                    ChatRoom chatRoom = rooms.get(room);
+                    if (chatRoom != null) {
+                        chatRoom.replace(previous, delivery);
+                        delivery.getRooms().add(room);
+                    }
+                }
+            }
+        }
+        addToRoom(delivery, ChatMessage.DEFAULT_ROOM);
+        delivery.enqueueRooms(roomsOf(delivery));
+        flushMailbox(delivery);
+        System.out.println("Client connecté: " + name);
+        broadcastSystem(name + " a rejoint le chat");
+    }
+
+    @Override
+    public long openSession(String name, ChatClient client) throws RemoteException {
+        registerClient(name, client);
+        long token;
+        do {
+            token = tokenSource.nextLong();
+        } while (token == 0);
+        sessions.put(name, new Session(token));
+        return token;
+    }
+
+    @Override
+    public boolean resumeSession(String name, long token, long lastSeq, ChatClient client) throws RemoteException {
+        Session session = sessions.get(name);
+        if (session == null || session.token != token || session.isExpired(System.currentTimeMillis())) {
+            return false;
+        }
+        ClientDelivery delivery = newDelivery(name, client);
+        List<String> previousRooms;
+        boolean wasOnline;
+        synchronized (presenceLock) {
+            ClientDelivery previous = attach(delivery);
+            wasOnline = previous != null;
+            if (previous != null) {
+                // Coupure pas encore détectée: les messages en file de l'ancienne livraison sont rejoués
+                previousRooms = roomsOf(previous);
+                for (String room : previousRooms) {
+                    removeFromRoom(previous, room);
+                }
+            } else {
+                previousRooms = session.detachedRooms;
+            }
+        }
+        session.detachedAtMillis = 0;
+
+        replayPrivate(delivery, lastSeq);
+        // Les messages journalisés de la boîte viennent d'être rejoués: seuls les autres restent à remettre
+        for (ChatMessage message : drainMailbox(name)) {
+            if (message.getSeq() == 0) {
+                delivery.enqueueMessage(message);
+            }
+        }
+        rejoinRoom(delivery, ChatMessage.DEFAULT_ROOM, lastSeq);
+        for (String room : previousRooms) {
+            rejoinRoom(delivery, room, lastSeq);
+        }
+        delivery.enqueueRooms(roomsOf(delivery));
+        System.out.println("Session reprise: " + name + " (après #" + lastSeq + ")");
+        if (!wasOnline) {
+            broadcastSystem(name + " s'est reconnecté");
+        }
+        return true;
+    }
+
+    private ClientDelivery newDelivery(String name, ChatClient client) {
+        ClientDelivery delivery = new ClientDelivery(name, client, deliveryExecutor, coalesceTimer, this::onDeliveryFailure);
+        delivery.setPresenceResync(() -> resyncPresence(delivery));
+        delivery.setCallbackLatency(metrics.getCallbackHistogram());
+        return delivery;
+    }
+
+    // Deltas de présence regroupés sur file pleine: une liste complète les remplace
+    private void resyncPresence(ClientDelivery delivery) {
+        synchronized (presenceLock) {
+            delivery.enqueueUserListSync(snapshotUsers(), presenceVersion.get());
+        }
+    }
+
+    // Appelé sous presenceLock; renvoie la livraison remplacée pour ce nom, ou null
+    private ClientDelivery attach(ClientDelivery delivery) {
+        try {
+            mailbox.markKnown(delivery.getName());
+        } catch (IOException e) {
+            System.err.println("Échec de l'écriture dans la boîte hors ligne: " + e.getMessage());
+        }
+        ClientDelivery previous = clients.register(delivery);
+        if (previous != null) {
+            // Même nom reconnecté: la liste des noms ne change pas, pas de delta
+            previous.close();
+            delivery.enqueueUserListSync(snapshotUsers(), presenceVersion.get());
+        } else {
+            long version = presenceVersion.incrementAndGet();
+            delivery.enqueueUserListSync(snapshotUsers(), version);
+            publishPresence(List.of(delivery.getName()), List.of(), version, delivery);
+            ChatFederation current = federation;
+            if (current != null) {
+                current.onLocalJoin(delivery.getName());
+            }
+        }
+        return previous;
+    }
+
+    // Rejeu puis inscription sous le verrou du salon: aucun message publié entre les deux
+    // n'est perdu ni reçu en double, et l'ordre des numéros est conservé. Un rejeu qui déborde
+    // la file (DISCONNECT) ferme la livraison, retirée plus tard par l'exécuteur: elle n'est
+    // alors pas inscrite.
+    private void rejoinRoom(ClientDelivery delivery, String room, long lastSeq) {
+        rooms.compute(room, (key, chatRoom) -> {
+            ChatRoom target = chatRoom != null ? chatRoom : new ChatRoom(key);
+            synchronized (target) {
+                for (ChatMessage message : missedMessages(room, lastSeq)) {
+                    delivery.enqueueMessage(message);
+                }
+                if (!delivery.isClosed() && target.add(delivery)) {
+                    delivery.getRooms().add(key);
+                }
+                return target.isEmpty() && !ChatMessage.DEFAULT_ROOM.equals(key) ? null : target;
+            }
+        });
+    }
+
+    // Au-delà de MAX_REPLAY messages manqués, seuls les plus récents sont renvoyés
+    private List<ChatMessage> missedMessages(String room, long lastSeq) {
+        if (log == null) return List.of();
+        try {
+            List<ChatMessage> missed = log.getHistory(room, lastSeq + 1, MAX_REPLAY);
+            return missed.size() < MAX_REPLAY ? missed : log.getHistory(room, 0, MAX_REPLAY);
+        } catch (IOException e) {
+            System.err.println("Rejeu impossible pour #" + room + ": " + e.getMessage());
+            return List.of();
+        }
+    }
+
+    private void replayPrivate(ClientDelivery delivery, long lastSeq) {
+        if (log == null) return;
+        try {
+            for (ChatMessage message : log.getPrivateHistory(delivery.getName(), lastSeq + 1, MAX_REPLAY)) {
+                delivery.enqueueMessage(message);
+            }
+        } catch (IOException e) {
+            System.err.println("Rejeu des messages privés impossible: " + e.getMessage());
+        }
+    }
+
+    private void expireSessions() {
+        long now = System.currentTimeMillis();
+        sessions.values().removeIf(session -> session.isExpired(now));
+    }
+
+    @Override
+    public void unregisterClient(String name) throws RemoteException {
+        ClientDelivery delivery = clients.get(name);
+        sessions.remove(name); // Départ volontaire: rien à reprendre
+        if (delivery != null && removeClient(delivery)) {
+            System.out.println("Client déconnecté: " + name);
+            broadcastSystem(name + " a quitté le chat");
+        }
+    }
+
+    @Override
+    public List<String> getOnlineUsers() throws RemoteException {
+        ChatFederation current = federation;
+        return current != null ? current.getOnlineUsers() : clients.snapshot().getUsers();
+    }
+
+    @Override
+    public void requestUserListSync(String name) throws RemoteException {
+        synchronized (presenceLock) {
+            ClientDelivery delivery = clients.get(name);
+            if (delivery != null) {
+                long version = presenceVersion.get();
+                List<String> users = snapshotUsers();
+                delivery.enqueueUserListSync(users, version);
+            }
+        }
+    }
+
+    @Override
+    public void joinRoom(String name, String room) throws RemoteException {
+        ClientDelivery delivery = clients.get(name);
+        if (delivery == null || room == null || room.isBlank()) return;
+        if (addToRoom(delivery, room)) {
+            delivery.enqueueRooms(roomsOf(delivery));
+            broadcastToRoom(room, name + " a rejoint #" + room);
+        }
+    }
+
+    @Override
+    public void leaveRoom(String name, String room) throws RemoteException {
+        ClientDelivery delivery = clients.get(name);
+        // Le salon par défaut ne se quitte qu'en se déconnectant
+        if (delivery == null || ChatMessage.DEFAULT_ROOM.equals(room)) return;
+        if (removeFromRoom(delivery, room)) {
+            delivery.enqueueRooms(roomsOf(delivery));
+            broadcastToRoom(room, name + " a quitté #" + room);
+        }
+    }
+
+    @Override
+    public List<String> getRooms() throws RemoteException {
+        List<String> names = new ArrayList<>(rooms.keySet());
+        Collections.sort(names);
+        return names;
+    }
+
+    private boolean addToRoom(ClientDelivery delivery, String room) {
+        boolean[] added = new boolean[1];
+        // compute sur la clé: pas de course avec la suppression d'un salon vide
+        rooms.compute(room, (key, chatRoom) -> {
+            ChatRoom target = chatRoom != null ? chatRoom : new ChatRoom(key);
+            added[0] = target.add(delivery);
+            return target;
+        });
+        if (added[0]) {
+            delivery.getRooms().add(room);
+        }
+        return added[0];
+    }
+
+    private boolean removeFromRoom(ClientDelivery delivery, String room) {
+        boolean[] removed = new boolean[1];
+        rooms.computeIfPresent(room, (key, chatRoom) -> {
+            removed[0] = chatRoom.remove(delivery);
+            return chatRoom.isEmpty() && !ChatMessage.DEFAULT_ROOM.equals(key) ? null : chatRoom;
+        });
+        delivery.getRooms().remove(room);
+        return removed[0];
+    }
+
+    private static List<String> roomsOf(ClientDelivery delivery) {
+        List<String> names = new ArrayList<>(delivery.getRooms());
+        Collections.sort(names);
+        return names;
+    }
+
+    private void routeToRoom(ChatMessage message) {
+        ClientDelivery sender = clients.get(message.getSender());
+        String room = message.getRoom();
+        ChatRoom chatRoom = rooms.get(room);
+        if (chatRoom == null || sender == null || !sender.getRooms().contains(room)) {
+            if (sender != null) {
+                sender.enqueueMessage(ChatMessage.systemMessage(
+                        "Vous n'êtes pas membre de #" + room, message.getLamportTime()).withRoom(room));
+            }
+            return;
+        }
+        publish(chatRoom, message);
+    }
+
+    // Le salon a pu disparaître ici (dernier membre local parti) mais pas sur les autres nœuds
+    private void broadcastToRoom(String room, String text) {
+        ChatRoom chatRoom = rooms.get(room);
+        if (chatRoom == null && federation == null) return;
+        publish(chatRoom, ChatMessage.systemMessage(text, clock.tick()).withRoom(room));
+    }
+
+    // En fédération, le propriétaire du salon fixe l'ordre: le message revient par publishRelayed
+    private void publish(ChatRoom chatRoom, ChatMessage message) {
+        ChatFederation current = federation;
+        if (current != null) {
+            current.publishToRoom(message);
+        } else {
+            publishToRoom(chatRoom, message);
+        }
+    }
+
+    // Message de salon ordonné par la fédération; journalisé même sans membre local,
+    // pour que l'historique et les reprises de session de chaque nœud soient complets
+    void publishRelayed(ChatMessage message) {
+        ChatRoom chatRoom = rooms.get(message.getRoom());
+        if (chatRoom == null) {
+            logMessage(message);
+            return;
+        }
+        publishToRoom(chatRoom, message);
+    }
+
+    // Journalisation et mise en file sous le verrou du salon: les membres reçoivent
+    // les messages d'un salon dans l'ordre de leurs numéros
+    private void publishToRoom(ChatRoom chatRoom, ChatMessage message) {
+        long start = System.nanoTime();
+        synchronized (chatRoom) {
+            ChatMessage logged = logMessage(message);
+            // Coût proportionnel à la taille du salon, pas au nombre de clients connectés
+            for (ClientDelivery member : chatRoom.getMembers()) {
+                member.enqueueMessage(logged);
+            }
+        }
+        metrics.recordFanOut(System.nanoTime() - start);
+    }
+
+    // Un échec d'écriture ne bloque pas la discussion: le message part sans numéro
+    private ChatMessage logMessage(ChatMessage message) {
+        if (log == null) return message;
+        try {
+            return log.append(message);
+        } catch (IOException e) {
+            System.err.println("Échec de l'écriture dans le journal: " + e.getMessage());
+            return message;
+        }
+    }
+
+    @Override
+    public List<ChatMessage> getHistory(String room, long fromSeq, int limit) throws RemoteException {
+        if (log == null) return Collections.emptyList();
+        try {
+            return new ArrayList<>(log.getHistory(room, fromSeq, Math.min(limit, MAX_HISTORY_PAGE)));
+        } catch (IOException e) {
+            throw new RemoteException("Lecture du journal impossible", e);
+        }
+    }
+
+    @Override
+    public void sendPrivateMessage(String fromUser, String toUser, String message) throws RemoteException {
+        sendChatMessage(ChatMessage.privateMessage(fromUser, toUser, message, 0));
+    }
+
+    @Override
+    public DeliveryResult sendDirectMessage(ChatMessage message) throws RemoteException {
+        if (message.getKind() != MessageKind.PRIVATE || message.getRecipient() == null) {
+            throw new RemoteException("Message privé attendu");
+        }
+        metrics.onMessageReceived();
+        return routePrivate(message.withLamportTime(mergeClock(message.getLamportTime())));
+    }
+
+    // Recherche directe du destinataire dans le registre; l'émetteur reçoit une copie
+    // (écho local confirmé) sauf si le nom est inconnu
+    private DeliveryResult routePrivate(ChatMessage message) throws RemoteException {
+        String name = message.getRecipient();
+        ClientDelivery recipient = clients.get(name);
+        ChatFederation current = federation;
+        if (recipient == null && current != null) {
+            return routeFederated(current, message);
+        }
+        if (recipient == null && !mailbox.isKnown(name)) {
+            return DeliveryResult.UNKNOWN_USER;
+        }
+
+        ChatMessage logged = logMessage(message);
+        ClientDelivery sender = clients.get(message.getSender());
+        if (sender != null && sender != recipient) {
+            sender.enqueueMessage(logged);
+        }
+        if (recipient != null) {
+            recipient.enqueueMessage(logged);
+            return DeliveryResult.DELIVERED;
+        }
+        try {
+            mailbox.store(name, logged);
+        } catch (IOException e) {
+            throw new RemoteException("Boîte hors ligne indisponible", e);
+        }
+        // Connecté entre la recherche et le dépôt: sa connexion a pu vider la boîte avant nous
+        ClientDelivery arrived = clients.get(name);
+        if (arrived != null) {
+            flushMailbox(arrived);
+        }
+        return DeliveryResult.QUEUED_OFFLINE;
+    }
+
+    // Destinataire connecté ailleurs ou absent: remis ou conservé par le propriétaire de son nom
+    private DeliveryResult routeFederated(ChatFederation current, ChatMessage message) throws RemoteException {
+        DeliveryResult result = current.routeDirect(message);
+        if (result != DeliveryResult.UNKNOWN_USER) {
+            ClientDelivery sender = clients.get(message.getSender());
+            if (sender != null) {
+                sender.enqueueMessage(logMessage(message));
+            }
+        }
+        return result;
+    }
+
+    // Remise par un autre nœud; renumérotés par le journal local pour les reprises de session
+    boolean deliverLocal(String user, List<ChatMessage> messages) {
+        ClientDelivery recipient = clients.get(user);
+        if (recipient == null) return false;
+        for (ChatMessage message : messages) {
+            recipient.enqueueMessage(logMessage(message.withSeq(0)));
+        }
+        return true;
+    }
+
+    // Ancien chemin (sendChatMessage, sendPrivateMessage): le résultat revient en message système
+    private void notifyPrivateResult(ChatMessage message, DeliveryResult result) {
+        if (result == DeliveryResult.DELIVERED) return;
+        ClientDelivery sender = clients.get(message.getSender());
+        if (sender == null) return;
+        String text = result == DeliveryResult.QUEUED_OFFLINE
+                ? message.getRecipient() + " n'est pas connecté: le message lui sera remis à sa connexion"
+                : message.getRecipient() + " est inconnu: message non envoyé";
+        sender.enqueueMessage(ChatMessage.systemMessage(text, message.getLamportTime()));
+    }
+
+    // Remise en bloc: la ClientDelivery regroupe les messages en lots de callbacks
+    private void flushMailbox(ClientDelivery delivery) {
+        for (ChatMessage message : drainMailbox(delivery.getName())) {
+            delivery.enqueueMessage(message);
+        }
+    }
+
+    // Une boîte illisible ne bloque pas la connexion; les messages restent dans le journal
+    private List<ChatMessage> drainMailbox(String name) {
+        try {
+            return mailbox.drain(name);
+        } catch (IOException e) {
+            System.err.println("Lecture de la boîte hors ligne impossible pour " + name + ": " + e.getMessage());
+            return List.of();
+        }
+    }
+
+    private void flushMailboxStore() {
+        try {
+            mailbox.flush();
+        } catch (IOException e) {
+            System.err.println("Échec de l'écriture de la boîte hors ligne: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean isUserOnline(String username) throws RemoteException {
+        if (clients.contains(username)) return true;
+        ChatFederation current = federation;
+        return current != null && current.isOnline(username);
+    }
+
+    long mergeClock(long received) {
+        return clock.merge(received);
+    }
+
+    private void broadcastSystem(String text) {
+        ChatMessage message = ChatMessage.systemMessage(text, clock.tick());
+        broadcast(message);
+        ChatFederation current = federation;
+        if (current != null) {
+            current.broadcast(message);
+        }
+    }
+
+    // Clients de ce nœud seulement
+    void broadcast(ChatMessage message) {
+        for (ClientDelivery delivery : clients.snapshot().getDeliveries()) {
+            delivery.enqueueMessage(message);
+        }
+    }
+
+    private boolean removeClient(ClientDelivery delivery) {
+        synchronized (presenceLock) {
+            if (!clients.remove(delivery)) {
+                return false;
+            }
+            delivery.close();
+            for (String room : new ArrayList<>(delivery.getRooms())) {
+                removeFromRoom(delivery, room);
+            }
+            long version = presenceVersion.incrementAndGet();
+            publishPresence(List.of(), List.of(delivery.getName()), version, null);
+            ChatFederation current = federation;
+            if (current != null) {
+                current.onLocalLeave(delivery.getName());
+            }
+            return true;
+        }
+    }
+
+    // Arrivées et départs sur un autre nœud, numérotés dans la suite des versions locales
+    void applyRemotePresence(List<String> joined, List<String> left) {
+        synchronized (presenceLock) {
+            long version = presenceVersion.incrementAndGet();
+            publishPresence(joined, left, version, null);
+        }
+    }
+
+    // Appelé sous presenceLock; le client qui vient de recevoir la liste complète est ignoré
+    private void publishPresence(List<String> joined, List<String> left, long version, ClientDelivery skip) {
+        for (ClientDelivery delivery : clients.snapshot().getDeliveries()) {
+            if (delivery != skip) {
+                delivery.enqueuePresence(joined, left, version, this::snapshotUsers);
+            }
+        }
+    }
+
+    // Clients connectés à ce nœud, sans ceux des autres nœuds de la fédération
+    List<String> getLocalUsers() {
+        return clients.snapshot().getUsers();
+    }
+
+    private List<String> snapshotUsers() {
+        ChatFederation current = federation;
+        if (current == null) return clients.snapshot().getUsers();
+        LinkedHashSet<String> users = new LinkedHashSet<>(clients.snapshot().getUsers());
+        users.addAll(current.getRemoteUsers());
+        return new ArrayList<>(users);
+    }
+
+    // Un callback a échoué: le client est considéré comme mort et retiré
+    private void onDeliveryFailure(ClientDelivery delivery, RemoteException e) {
+        evict(delivery, "échec de livraison: " + e.getMessage());
+    }
+
+    @Override
+    public boolean heartbeat(String name) throws RemoteException {
+        ClientDelivery delivery = clients.get(name);
+        if (delivery == null) return false;
+        delivery.renewLease(TimeUnit.MILLISECONDS.toNanos(LEASE_MS));
+        return true;
+    }
+
+    // Clients sans heartbeat depuis LEASE_MS: processus mort sans unregisterClient
+    private void evictExpiredLeases() {
+        long now = System.nanoTime();
+        for (ClientDelivery delivery : clients.snapshot().getDeliveries()) {
+            if (delivery.isLeaseExpired(now)) {
+                evict(delivery, "bail expiré");
+            }
+        }
+    }
+
+    // Départ involontaire: le client est retiré mais sa session reste reprenable
+    private void evict(ClientDelivery delivery, String reason) {
+        System.err.println("Client retiré: " + delivery.getName() + " (" + reason + ")");
+        List<String> detachedRooms = roomsOf(delivery);
+        if (removeClient(delivery)) {
+            // La session reste reprenable pendant SESSION_GRACE_MS
+            Session session = sessions.get(delivery.getName());
+            if (session != null) {
+                session.detachedRooms = detachedRooms;
+                session.detachedAtMillis = System.currentTimeMillis();
+            }
+            broadcastSystem(delivery.getName() + " a quitté le chat");
+        }
+    }
+
+    public ServerMetrics getMetrics() {
+        return metrics;
+    }
+
+    public ClientRegistry getRegistry() {
+        return clients;
+    }
+
+    public LogicalClock getClock() {
+        return clock;
+    }
+
+    public MessageLog getMessageLog() {
+        return log;
+    }
+
+    // À appeler avant d'accepter des clients
+    public void setFederation(ChatFederation federation) {
+        this.federation = federation;
+    }
+
+    public void shutdown() {
+        if (federation != null) {
+            federation.close();
+        }
+        coalesceTimer.shutdownNow();
+        deliveryExecutor.shutdownNow();
+        if (log != null) {
+            log.close();
+        }
+        try {
+            mailbox.close();
+        } catch (IOException e) {
+            System.err.println("Fermeture de la boîte hors ligne impossible: " + e.getMessage());
+        }
+    }
+
+    public static void main(String[] args) {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 1099;
+        try {
+            // Un callback vers un client disparu échoue en secondes, pas après l'expiration TCP
+            RMISocketFactory.setSocketFactory(new TimeoutSocketFactory(
+                    Integer.getInteger("chat.rmi.connectTimeoutMs", 3000),
+                    Integer.getInteger("chat.rmi.readTimeoutMs", 10_000)));
+            MessageLog log = MessageLog.open(Paths.get(System.getProperty("chat.log.dir", "chat-log")));
+            OfflineMailbox mailbox = ShardedMailbox.open(Paths.get(System.getProperty("chat.mailbox.dir", "chat-mailbox")));
+            ChatServerImpl server = new ChatServerImpl(Executors.newVirtualThreadPerTaskExecutor(), log, mailbox);
+            server.start();
+            Registry registry = LocateRegistry.createRegistry(port);
+            // Fédération: -Dchat.federation.peers=hôte:port,... liste les registres des autres nœuds
+            // (le même ensemble sur tous); chat.federation.node est l'adresse de ce nœud telle
+            // qu'ils la voient. Sur une même machine, espacer les ports: le transport socket prend port+1
+            String peers = System.getProperty("chat.federation.peers", "");
+            if (!peers.isBlank()) {
+                String node = System.getProperty("chat.federation.node", "localhost:" + port);
+                ChatFederation federation = ChatFederation.create(node, List.of(peers.trim().split("\\s*,\\s*")),
+                        server, mailbox, Executors.newVirtualThreadPerTaskExecutor());
+                server.setFederation(federation);
+                registry.rebind("ChatPeer", federation);
+                federation.start();
+                System.out.println("Nœud " + node + " fédéré avec " + peers);
+            }
+            registry.rebind("ChatServer", server);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(server.getMetrics(), new ObjectName("chat:type=Server"));
+            System.out.println("Serveur de chat démarré sur le port " + port);
+            // Transport socket pour les clients derrière un NAT (adresse "tcp://hôte"); -1 le désactive
+            int socketPort = Integer.getInteger("chat.socket.port", port + 1);
+            if (socketPort >= 0) {
+                SocketChatServer socketServer = new SocketChatServer(server, socketPort);
+                socketServer.start();
+                System.out.println("Transport socket sur le port " + socketServer.getPort());
+            }
+        } catch (Exception e) {
+            System.err.println("Échec du démarrage du serveur: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,350 @@
+import javax.swing.*;
+import javax.swing.text.*;
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+// Zone de discussion bornée: le document ne garde que les derniers messages,
+// les plus anciens passent dans une TranscriptArchive et reviennent quand
+// l'utilisateur remonte en haut de la zone. Toutes les méthodes s'exécutent sur l'EDT.
+public class ChatTranscript {
+
+    public static final int DEFAULT_MAX_MESSAGES = Integer.getInteger("chat.transcript.maxMessages", 1000);
+    public static final int DEFAULT_ARCHIVE_SIZE = Integer.getInteger("chat.transcript.archiveSize", 20000);
+
+    // Marge en pixels pour considérer que la vue suit le bas de la discussion
+    private static final int FOLLOW_SLACK = 16;
+    private static final Color REVEAL_COLOR = new Color(255, 236, 179);
+
+    public static final class Entry {
+        final String timestamp;
+        final String message;
+        final AttributeSet timestampAttrs;
+        final AttributeSet messageAttrs;
+        SendStatus status;       // Écho local d'un message envoyé, null sinon
+        Position statusPosition; // Emplacement de la marque tant que l'entrée est dans le document
+
+        public Entry(String timestamp, String message, AttributeSet timestampAttrs, AttributeSet messageAttrs) {
+            this.timestamp = timestamp;
+            this.message = message;
+            this.timestampAttrs = timestampAttrs;
+            this.messageAttrs = messageAttrs;
+        }
+
+        public Entry withStatus(SendStatus status) {
+            this.status = status;
+            return this;
+        }
+
+        // "[" + timestamp + "] " puis message, éventuellement " " + marque, puis "\n"
+        int length() {
+            return timestamp.length() + 3 + message.length() + (status != null ? 2 : 0) + 1;
+        }
+
+        String body() {
+            return status != null ? message + " " + status.getMark() + "\n" : message + "\n";
+        }
+
+        // Décalage de la marque d'état depuis le début de l'entrée
+        int statusOffset() {
+            return timestamp.length() + 3 + message.length() + 1;
+        }
+    }
+
+    private final JTextPane textPane;
+    private final JScrollPane scrollPane;
+    private final int maxMessages;
+    private final int trimChunk;
+    private final ArrayDeque<Entry> shown = new ArrayDeque<>();
+    private final TranscriptArchive archive;
+    private boolean loadingOlder = false;
+    private Object revealHighlight; // Surlignage du dernier résultat de recherche affiché
+
+    public ChatTranscript(JTextPane textPane, JScrollPane scrollPane) {
+        this(textPane, scrollPane, DEFAULT_MAX_MESSAGES, DEFAULT_ARCHIVE_SIZE);
+    }
+
+    public ChatTranscript(JTextPane textPane, JScrollPane scrollPane, StyleContext styles) {
+        this(textPane, scrollPane, DEFAULT_MAX_MESSAGES, DEFAULT_ARCHIVE_SIZE, new TranscriptDocument(styles));
+    }
+
+    public ChatTranscript(JTextPane textPane, JScrollPane scrollPane, int maxMessages, int archiveSize) {
+        this(textPane, scrollPane, maxMessages, archiveSize, new TranscriptDocument());
+    }
+
+    public ChatTranscript(JTextPane textPane, JScrollPane scrollPane, int maxMessages, int archiveSize,
+                          TranscriptDocument document) {
+        this.textPane = textPane;
+        this.scrollPane = scrollPane;
+        this.maxMessages = Math.max(1, maxMessages);
+        this.trimChunk = Math.max(1, this.maxMessages / 4);
+        this.archive = new TranscriptArchive(archiveSize);
+        textPane.setStyledDocument(document);
+
+        // Arrivé en haut de la zone: on réaffiche un bloc de l'historique archivé
+        scrollPane.getVerticalScrollBar().addAdjustmentListener(e -> {
+            if (!e.getValueIsAdjusting() && e.getValue() == 0 && !archive.isEmpty()) {
+                SwingUtilities.invokeLater(this::loadOlder);
+            }
+        });
+    }
+
+    public void append(Entry entry) {
+        appendAll(List.of(entry));
+    }
+
+    // Un lot = une seule modification du document et au plus un défilement
+    public void appendAll(List<Entry> entries) {
+        boolean following = isFollowing();
+        TranscriptDocument doc = (TranscriptDocument) textPane.getStyledDocument();
+        try {
+            doc.appendEntries(entries);
+        } catch (BadLocationException e) {
+            e.printStackTrace();
+            return;
+        }
+        shown.addAll(entries);
+
+        // Tant que l'utilisateur lit l'historique on tolère un document deux fois plus long
+        if (shown.size() > maxMessages && (following || shown.size() > 2 * maxMessages)) {
+            trimOldest(shown.size() - maxMessages + trimChunk);
+        }
+        if (following) {
+            textPane.setCaretPosition(doc.getLength());
+        }
+    }
+
+    // Messages antérieurs à tout ce qui est affiché (historique du serveur), du plus ancien au
+    // plus récent; seuls les plus récents qui tiennent dans le document sont insérés
+    public void prependAll(List<Entry> entries) {
+        if (!archive.isEmpty()) return; // Le document ne commence plus au premier message reçu
+        boolean following = isFollowing();
+        StyledDocument doc = textPane.getStyledDocument();
+        int room = Math.max(0, maxMessages - shown.size());
+        try {
+            for (int i = entries.size() - 1; i >= Math.max(0, entries.size() - room); i--) {
+                Entry entry = entries.get(i);
+                insertEntry(doc, 0, entry);
+                shown.addFirst(entry);
+            }
+        } catch (BadLocationException e) {
+            e.printStackTrace();
+        }
+        if (following) {
+            textPane.setCaretPosition(doc.getLength());
+        }
+    }
+
+    // Messages manqués pendant l'absence, insérés avant les newerCount derniers affichés
+    // (reçus en direct depuis la reconnexion)
+    public void insertBeforeNewest(int newerCount, List<Entry> entries) {
+        if (newerCount <= 0) {
+            appendAll(entries);
+            return;
+        }
+        if (newerCount >= shown.size()) {
+            insertBeforeShown(newerCount - shown.size(), entries);
+            return;
+        }
+        boolean following = isFollowing();
+        StyledDocument doc = textPane.getStyledDocument();
+        ArrayDeque<Entry> newer = new ArrayDeque<>();
+        for (int i = 0; i < newerCount; i++) {
+            newer.addFirst(shown.pollLast());
+        }
+        int offset = 0;
+        for (Entry entry : shown) {
+            offset += entry.length();
+        }
+        try {
+            for (Entry entry : entries) {
+                insertEntry(doc, offset, entry);
+                offset += entry.length();
+                shown.addLast(entry);
+            }
+        } catch (BadLocationException e) {
+            e.printStackTrace();
+        }
+        shown.addAll(newer);
+        if (following) {
+            textPane.setCaretPosition(doc.getLength());
+        }
+    }
+
+    // Tous les messages affichés sont plus récents que entries. Si archivedNewer messages en
+    // direct sont déjà passés dans l'archive, entries y vont aussi, juste avant eux; sinon
+    // elles s'insèrent en haut du document et ce qui n'y tient pas passe dans l'archive
+    private void insertBeforeShown(int archivedNewer, List<Entry> entries) {
+        if (archivedNewer > 0) {
+            archive.insertBeforeNewest(archivedNewer, entries);
+            return;
+        }
+        boolean following = isFollowing();
+        StyledDocument doc = textPane.getStyledDocument();
+        int room = Math.max(0, maxMessages - shown.size());
+        int first = Math.max(0, entries.size() - room);
+        for (int i = 0; i < first; i++) {
+            archive.addNewest(entries.get(i));
+        }
+        try {
+            for (int i = entries.size() - 1; i >= first; i--) {
+                Entry entry = entries.get(i);
+                insertEntry(doc, 0, entry);
+                shown.addFirst(entry);
+            }
+        } catch (BadLocationException e) {
+            e.printStackTrace();
+        }
+        if (following) {
+            textPane.setCaretPosition(doc.getLength());
+        }
+    }
+
+    public int getDocumentLength() {
+        return textPane.getStyledDocument().getLength();
+    }
+
+    // La marque fait toujours un caractère: seul ce caractère est remplacé
+    public void updateStatus(Entry entry, SendStatus status) {
+        entry.status = status;
+        if (entry.statusPosition == null) return; // Entrée archivée: affichée à jour au rechargement
+        StyledDocument doc = textPane.getStyledDocument();
+        int offset = entry.statusPosition.getOffset();
+        try {
+            doc.remove(offset, 1);
+            doc.insertString(offset, status.getMark(), entry.messageAttrs);
+            entry.statusPosition = doc.createPosition(offset);
+        } catch (BadLocationException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Sélectionne et fait défiler jusqu'à l'entrée; une entrée archivée est d'abord réaffichée
+    // avec toutes les plus récentes. false si elle n'est plus ni affichée ni archivée
+    public boolean reveal(Entry entry) {
+        if (!shown.contains(entry)) {
+            if (!archive.contains(entry)) return false;
+            restoreThrough(entry);
+        }
+        int offset = 0;
+        for (Entry candidate : shown) {
+            if (candidate == entry) break;
+            offset += candidate.length();
+        }
+        Highlighter highlighter = textPane.getHighlighter();
+        if (revealHighlight != null) {
+            highlighter.removeHighlight(revealHighlight);
+        }
+        try {
+            revealHighlight = highlighter.addHighlight(offset, offset + entry.length() - 1,
+                    new DefaultHighlighter.DefaultHighlightPainter(REVEAL_COLOR));
+        } catch (BadLocationException e) {
+            e.printStackTrace();
+        }
+        // Après la mise en page: l'onglet vient peut-être d'être créé ou affiché
+        int target = offset;
+        SwingUtilities.invokeLater(() -> {
+            try {
+                Rectangle2D view = textPane.modelToView2D(target);
+                if (view == null) return;
+                Rectangle rect = view.getBounds();
+                rect.height = Math.max(rect.height, scrollPane.getViewport().getExtentSize().height / 2);
+                textPane.scrollRectToVisible(rect);
+            } catch (BadLocationException e) {
+                e.printStackTrace();
+            }
+        });
+        return true;
+    }
+
+    private void restoreThrough(Entry entry) {
+        StyledDocument doc = textPane.getStyledDocument();
+        try {
+            Entry restored;
+            do {
+                restored = archive.pollNewest();
+                insertEntry(doc, 0, restored);
+                shown.addFirst(restored);
+            } while (restored != entry);
+        } catch (BadLocationException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public int getShownCount() {
+        return shown.size();
+    }
+
+    public int getArchivedCount() {
+        return archive.size();
+    }
+
+    private void trimOldest(int count) {
+        int length = 0;
+        for (int i = 0; i < count && !shown.isEmpty(); i++) {
+            Entry entry = shown.pollFirst();
+            length += entry.length();
+            entry.statusPosition = null;
+            archive.addNewest(entry);
+        }
+        try {
+            textPane.getStyledDocument().remove(0, length);
+        } catch (BadLocationException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void loadOlder() {
+        if (loadingOlder || archive.isEmpty()) return;
+        loadingOlder = true;
+        try {
+            JViewport viewport = scrollPane.getViewport();
+            int anchor = textPane.viewToModel2D(viewport.getViewPosition());
+
+            List<Entry> older = new ArrayList<>(trimChunk);
+            for (int i = 0; i < trimChunk && !archive.isEmpty(); i++) {
+                older.add(archive.pollNewest());
+            }
+            // older est du plus récent au plus ancien: chaque insertion se fait en tête
+            StyledDocument doc = textPane.getStyledDocument();
+            int inserted = 0;
+            for (Entry entry : older) {
+                insertEntry(doc, 0, entry);
+                shown.addFirst(entry);
+                inserted += entry.length();
+            }
+
+            // Garder à l'écran le message qui y était avant le chargement
+            int target = anchor + inserted;
+            SwingUtilities.invokeLater(() -> {
+                try {
+                    Rectangle rect = textPane.modelToView2D(target).getBounds();
+                    viewport.setViewPosition(new Point(0, rect.y));
+                } catch (BadLocationException e) {
+                    e.printStackTrace();
+                } finally {
+                    loadingOlder = false;
+                }
+            });
+        } catch (BadLocationException e) {
+            loadingOlder = false;
+            e.printStackTrace();
+        }
+    }
+
+    private boolean isFollowing() {
+        JScrollBar bar = scrollPane.getVerticalScrollBar();
+        return bar.getValue() + bar.getVisibleAmount() >= bar.getMaximum() - FOLLOW_SLACK;
+    }
+
+    private static void insertEntry(StyledDocument doc, int offset, Entry entry) throws BadLocationException {
+        String prefix = "[" + entry.timestamp + "] ";
+        doc.insertString(offset, prefix, entry.timestampAttrs);
+        doc.insertString(offset + prefix.length(), entry.body(), entry.messageAttrs);
+        if (entry.status != null) {
+            entry.statusPosition = doc.createPosition(offset + entry.statusOffset());
+        }
+    }
+}
@@ -0,0 +1,54 @@
+import java.rmi.NoSuchObjectException;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.RemoteObject;
+import java.rmi.server.UnicastRemoteObject;
+
+// Transport client vers le serveur, choisi d'après l'adresse saisie: "tcp://hôte" passe par
+// une connexion socket unique (SocketChatServer), toute autre adresse par le registre RMI.
+// Le reste du client ne voit qu'un ChatServer et des RemoteException dans les deux cas.
+public enum ChatTransport {
+    RMI {
+        @Override
+        public ChatServer connect(String host, int port, ChatClient client) throws Exception {
+            exportOnce(client);
+            Registry registry = LocateRegistry.getRegistry(host, port);
+            return (ChatServer) registry.lookup("ChatServer");
+        }
+    },
+    SOCKET {
+        @Override
+        public ChatServer connect(String host, int port, ChatClient client) throws Exception {
+            // Les callbacks reviennent sur la même connexion: rien à exporter
+            return SocketChatServerProxy.connect(host, port);
+        }
+    };
+
+    private static final String SOCKET_SCHEME = "tcp://";
+
+    public abstract ChatServer connect(String host, int port, ChatClient client) throws Exception;
+
+    // Libère la connexion d'un serveur abandonné (déconnexion, reconnexion)
+    public void close(ChatServer server) {
+        if (server instanceof SocketChatServerProxy) {
+            ((SocketChatServerProxy) server).close();
+        }
+    }
+
+    public static ChatTransport forAddress(String address) {
+        return address.startsWith(SOCKET_SCHEME) ? SOCKET : RMI;
+    }
+
+    public static String hostOf(String address) {
+        return address.startsWith(SOCKET_SCHEME) ? address.substring(SOCKET_SCHEME.length()) : address;
+    }
+
+    // Le même client sert à toutes les reconnexions: un second export échouerait
+    private static void exportOnce(ChatClient client) throws Exception {
+        try {
+            RemoteObject.toStub(client);
+        } catch (NoSuchObjectException e) {
+            UnicastRemoteObject.exportObject(client, 0);
+        }
+    }
+}
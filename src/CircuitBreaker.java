@@ -0,0 +1,57 @@
+// Coupe-circuit d'un client: après un échec, les livraisons sont suspendues pendant
+// openMillis puis retentées une fois (HALF_OPEN); au bout de failureThreshold échecs
+// d'affilée le client est considéré comme mort. Utilisé par le seul worker du client,
+// l'état est lisible depuis les autres threads.
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long openMillis;
+    private volatile State state = State.CLOSED;
+    private volatile int consecutiveFailures = 0;
+    private volatile long tripCount = 0;
+
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openMillis = openMillis;
+    }
+
+    // Début d'un passage du worker: après une suspension, l'appel suivant sert de test
+    public void beforeAttempt() {
+        if (state == State.OPEN) {
+            state = State.HALF_OPEN;
+        }
+    }
+
+    public void recordSuccess() {
+        consecutiveFailures = 0;
+        state = State.CLOSED;
+    }
+
+    // Renvoie true quand le seuil d'échecs consécutifs est atteint
+    public boolean recordFailure() {
+        consecutiveFailures++;
+        if (state == State.CLOSED) {
+            tripCount++;
+        }
+        state = State.OPEN;
+        return consecutiveFailures >= failureThreshold;
+    }
+
+    public long getOpenMillis() {
+        return openMillis;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    public long getTripCount() {
+        return tripCount;
+    }
+}
@@ -0,0 +1,488 @@
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// File d'envoi dédiée à un client: les callbacks RMI sont exécutés dans l'ordre,
+// sur un worker propre, pour qu'un client lent ne bloque jamais les autres.
+// Les messages consécutifs sont regroupés en un seul appel receiveChatMessages.
+public class ClientDelivery implements Runnable {
+
+    // Nombre max de callbacks traités avant de rendre la main à l'executor
+    private static final int MAX_TASKS_PER_RUN = 64;
+    // Taille max d'un lot et fenêtre d'attente pour laisser le lot se remplir
+    private static final int MAX_BATCH_SIZE = 256;
+    private static final long COALESCE_WINDOW_MICROS = 2000;
+    // Échecs consécutifs avant de déclarer le client mort, et pause entre deux tentatives
+    private static final int FAILURE_THRESHOLD = Integer.getInteger("chat.delivery.failureThreshold", 3);
+    private static final long RETRY_DELAY_MS = Long.getLong("chat.delivery.retryMs", 1000);
+    // Capacité de la file d'un client et conduite quand elle est pleine
+    public static final int DEFAULT_MAX_QUEUE = Integer.getInteger("chat.delivery.maxQueue", 10_000);
+    public static final OverflowPolicy DEFAULT_OVERFLOW_POLICY =
+            OverflowPolicy.valueOf(System.getProperty("chat.delivery.overflowPolicy", "COLLAPSE_PRESENCE"));
+
+    public interface Task {
+        void deliver(ChatClient client) throws RemoteException;
+    }
+
+    public interface FailureHandler {
+        void onDeliveryFailure(ClientDelivery delivery, RemoteException e);
+    }
+
+    // Méthodes de réception essayées dans l'ordre, de la plus récente à la plus ancienne
+    private static final int MODE_CHAT_MESSAGES = 0;
+    private static final int MODE_STRING_BATCH = 1;
+    private static final int MODE_SINGLE_STRING = 2;
+
+    private static final class MessageTask implements Task {
+        private final ChatMessage message;
+
+        MessageTask(ChatMessage message) {
+            this.message = message;
+        }
+
+        @Override
+        public void deliver(ChatClient client) throws RemoteException {
+            client.receiveChatMessages(List.of(message));
+        }
+    }
+
+    // Lot déjà retiré de la file, gardé tel quel pour être retenté après un échec
+    private final class BatchTask implements Task {
+        private final List<ChatMessage> batch;
+
+        BatchTask(List<ChatMessage> batch) {
+            this.batch = batch;
+        }
+
+        @Override
+        public void deliver(ChatClient client) throws RemoteException {
+            deliverBatch(batch);
+        }
+    }
+
+    // Mise à jour de présence (delta ou liste complète) qu'un regroupement peut annuler
+    // pendant qu'elle attend: le premier qui la réclame (worker ou regroupement) la décompte
+    private abstract static class PresenceUpdate implements Task {
+        final AtomicBoolean claimed = new AtomicBoolean(false);
+    }
+
+    private final class PresenceTask extends PresenceUpdate {
+        private final List<String> joined;
+        private final List<String> left;
+        private final long version;
+        private final Supplier<List<String>> snapshot;
+
+        PresenceTask(List<String> joined, List<String> left, long version, Supplier<List<String>> snapshot) {
+            this.joined = joined;
+            this.left = left;
+            this.version = version;
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public void deliver(ChatClient client) throws RemoteException {
+            if (!legacyPresence) {
+                try {
+                    client.updatePresence(joined, left, version);
+                    return;
+                } catch (RemoteException e) {
+                    if (!RmiCompat.isUnsupportedMethod(e)) throw e;
+                    legacyPresence = true;
+                }
+            }
+            client.updateUserList(snapshot.get());
+        }
+    }
+
+    private final class SyncTask extends PresenceUpdate {
+        private final List<String> users;
+        private final long version;
+
+        SyncTask(List<String> users, long version) {
+            this.users = users;
+            this.version = version;
+        }
+
+        @Override
+        public void deliver(ChatClient client) throws RemoteException {
+            if (!legacyPresence) {
+                try {
+                    client.syncUserList(users, version);
+                    return;
+                } catch (RemoteException e) {
+                    if (!RmiCompat.isUnsupportedMethod(e)) throw e;
+                    legacyPresence = true;
+                }
+            }
+            client.updateUserList(users);
+        }
+    }
+
+    private final String name;
+    private final ChatClient client;
+    private final Executor executor;
+    private final ScheduledExecutorService timer;
+    private final FailureHandler failureHandler;
+    private final ConcurrentLinkedQueue<Task> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger(0);
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private volatile boolean closed = false;
+    private final CircuitBreaker breaker = new CircuitBreaker(FAILURE_THRESHOLD, RETRY_DELAY_MS);
+    private Task retry; // Tâche à reprendre en tête au passage suivant (worker seulement)
+    private volatile int maxQueue = DEFAULT_MAX_QUEUE;
+    private volatile OverflowPolicy overflowPolicy = DEFAULT_OVERFLOW_POLICY;
+    private volatile Runnable presenceResync = () -> { };
+    private final AtomicInteger queuedPresence = new AtomicInteger(0);
+    // Métriques de la file
+    private final AtomicInteger maxQueueDepth = new AtomicInteger(0);
+    private final AtomicLong droppedMessages = new AtomicLong(0);
+    private final AtomicLong droppedTasks = new AtomicLong(0);
+    private final AtomicLong collapsedDeltas = new AtomicLong(0);
+    private final AtomicLong overflowCount = new AtomicLong(0);
+    // Bail renouvelé par les heartbeats du client (0 = client sans heartbeat, pas d'expiration)
+    private volatile long leaseDeadlineNanos = 0;
+    // Salons dont ce client est membre, pour vérifier l'émetteur et nettoyer au départ
+    private final Set<String> rooms = ConcurrentHashMap.newKeySet();
+    // Durée des callbacks: histogramme partagé du serveur (null = pas de mesure) et moyenne propre au client
+    private volatile LatencyHistogram callbackLatency;
+    private final AtomicLong callbackCount = new AtomicLong(0);
+    private final AtomicLong callbackMicros = new AtomicLong(0);
+    // Descend d'un cran quand le client ne connaît pas la méthode de réception courante
+    private volatile int messageMode = MODE_CHAT_MESSAGES;
+    // Client sans updatePresence: il reçoit la liste complète à chaque changement
+    private volatile boolean legacyPresence = false;
+
+    public ClientDelivery(String name, ChatClient client, Executor executor,
+                          ScheduledExecutorService timer, FailureHandler failureHandler) {
+        this.name = name;
+        this.client = client;
+        this.executor = executor;
+        this.timer = timer;
+        this.failureHandler = failureHandler;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public ChatClient getClient() {
+        return client;
+    }
+
+    public Set<String> getRooms() {
+        return rooms;
+    }
+
+    public void setOverflowPolicy(OverflowPolicy policy, int maxQueue) {
+        this.overflowPolicy = policy;
+        this.maxQueue = Math.max(1, maxQueue);
+    }
+
+    // Fourni par le serveur: met en file une liste complète cohérente avec sa version
+    public void setPresenceResync(Runnable presenceResync) {
+        this.presenceResync = presenceResync;
+    }
+
+    public void setCallbackLatency(LatencyHistogram callbackLatency) {
+        this.callbackLatency = callbackLatency;
+    }
+
+    public double getMeanCallbackMicros() {
+        long count = callbackCount.get();
+        return count == 0 ? 0 : (double) callbackMicros.get() / count;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public int getQueueDepth() {
+        return pending.get();
+    }
+
+    public int getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    public long getDroppedMessages() {
+        return droppedMessages.get();
+    }
+
+    // Tâches autres que des messages (présence, salons) abandonnées
+    public long getDroppedTasks() {
+        return droppedTasks.get();
+    }
+
+    public long getCollapsedDeltas() {
+        return collapsedDeltas.get();
+    }
+
+    public long getOverflowCount() {
+        return overflowCount.get();
+    }
+
+    public CircuitBreaker getBreaker() {
+        return breaker;
+    }
+
+    public void renewLease(long durationNanos) {
+        leaseDeadlineNanos = System.nanoTime() + durationNanos;
+    }
+
+    public boolean isLeaseExpired(long nowNanos) {
+        long deadline = leaseDeadlineNanos;
+        return deadline != 0 && nowNanos - deadline > 0;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public void enqueueMessage(ChatMessage message) {
+        enqueue(new MessageTask(message));
+    }
+
+    public void enqueuePresence(List<String> joined, List<String> left, long version,
+                                Supplier<List<String>> snapshot) {
+        enqueue(new PresenceTask(joined, left, version, snapshot));
+    }
+
+    public void enqueueUserListSync(List<String> users, long version) {
+        enqueue(new SyncTask(users, version));
+    }
+
+    // Un client sans updateRooms n'affiche qu'un seul salon: l'information est simplement perdue
+    public void enqueueRooms(List<String> roomNames) {
+        enqueue(c -> {
+            try {
+                c.updateRooms(roomNames);
+            } catch (RemoteException e) {
+                if (!RmiCompat.isUnsupportedMethod(e)) throw e;
+            }
+        });
+    }
+
+    public void enqueue(Task task) {
+        if (closed) return;
+        if (task instanceof PresenceUpdate) {
+            queuedPresence.incrementAndGet();
+        }
+        queue.offer(task);
+        int size = pending.incrementAndGet();
+        if (size > maxQueue) {
+            onOverflow();
+            if (closed) return;
+            size = pending.get();
+        }
+        maxQueueDepth.accumulateAndGet(size, Math::max);
+        schedule(size >= MAX_BATCH_SIZE || !(task instanceof MessageTask));
+    }
+
+    // Appelé depuis enqueue, souvent sous un verrou du serveur (salon, rooms.compute): les
+    // rappels vers le serveur passent par l'exécuteur plutôt que de le réentrer ici
+    private void onOverflow() {
+        overflowCount.incrementAndGet();
+        switch (overflowPolicy) {
+            case DISCONNECT:
+                System.err.println("File pleine pour " + name + " (" + maxQueue + " tâches): client retiré");
+                close();
+                RemoteException failure = new RemoteException("File d'envoi pleine (" + maxQueue + " tâches)");
+                executor.execute(() -> failureHandler.onDeliveryFailure(this, failure));
+                return;
+            case COLLAPSE_PRESENCE:
+                if (collapsePresence()) return;
+                // Que des messages en attente: les plus anciens sont abandonnés
+                dropOldest();
+                return;
+            default:
+                dropOldest();
+        }
+    }
+
+    // Annule les mises à jour de présence en attente et demande au serveur une seule liste
+    // complète à la place; sans au moins deux à remplacer, aucune place n'est libérée
+    private boolean collapsePresence() {
+        if (queuedPresence.get() < 2) return false;
+        int collapsed = 0;
+        for (Task task : queue) {
+            if (task instanceof PresenceUpdate && claim((PresenceUpdate) task)) {
+                collapsed++;
+            }
+        }
+        if (collapsed == 0) return false;
+        queue.removeIf(task -> task instanceof PresenceUpdate && ((PresenceUpdate) task).claimed.get());
+        collapsedDeltas.addAndGet(collapsed);
+        executor.execute(presenceResync);
+        return true;
+    }
+
+    private void dropOldest() {
+        while (pending.get() > maxQueue) {
+            Task task = queue.poll();
+            if (task == null) return;
+            if (task instanceof PresenceUpdate && !claim((PresenceUpdate) task)) {
+                continue; // Déjà décompté par un regroupement
+            }
+            if (!(task instanceof PresenceUpdate)) {
+                pending.decrementAndGet();
+            }
+            if (task instanceof MessageTask) {
+                droppedMessages.incrementAndGet();
+            } else {
+                droppedTasks.incrementAndGet();
+            }
+        }
+    }
+
+    // Retire un delta du décompte de la file; false s'il a déjà été réclamé
+    private boolean claim(PresenceUpdate task) {
+        if (!task.claimed.compareAndSet(false, true)) return false;
+        pending.decrementAndGet();
+        queuedPresence.decrementAndGet();
+        return true;
+    }
+
+    public void close() {
+        closed = true;
+        queue.clear();
+        pending.set(0);
+        queuedPresence.set(0);
+        retry = null;
+    }
+
+    private void schedule(boolean immediate) {
+        if (scheduled.compareAndSet(false, true)) {
+            if (immediate) {
+                executor.execute(this);
+            } else {
+                timer.schedule(() -> executor.execute(this), COALESCE_WINDOW_MICROS, TimeUnit.MICROSECONDS);
+            }
+        }
+    }
+
+    // Un échec isolé ouvre le coupe-circuit: la tâche est retentée après RETRY_DELAY_MS,
+    // les nouvelles tâches s'accumulent sans être tentées; au seuil, le client est retiré
+    @Override
+    public void run() {
+        boolean retryLater = false;
+        try {
+            Task task;
+            int processed = 0;
+            breaker.beforeAttempt();
+            while (!closed && processed < MAX_TASKS_PER_RUN && (task = nextTask()) != null) {
+                if (task instanceof MessageTask) {
+                    task = new BatchTask(collectBatch((MessageTask) task));
+                }
+                try {
+                    long start = System.nanoTime();
+                    task.deliver(client);
+                    recordCallback((System.nanoTime() - start) / 1000);
+                    breaker.recordSuccess();
+                } catch (RemoteException e) {
+                    if (breaker.recordFailure()) {
+                        close();
+                        failureHandler.onDeliveryFailure(this, e);
+                        return;
+                    }
+                    retry = task;
+                    retryLater = true;
+                    return;
+                }
+                processed++;
+            }
+        } finally {
+            if (retryLater && !closed) {
+                // scheduled reste vrai: aucun autre passage avant la fin de la pause
+                timer.schedule(() -> executor.execute(this), breaker.getOpenMillis(), TimeUnit.MILLISECONDS);
+            } else {
+                scheduled.set(false);
+                // Un message a pu arriver entre le dernier poll et le reset du flag
+                if (!closed && !queue.isEmpty()) {
+                    schedule(true);
+                }
+            }
+        }
+    }
+
+    private void recordCallback(long micros) {
+        callbackCount.incrementAndGet();
+        callbackMicros.addAndGet(micros);
+        LatencyHistogram histogram = callbackLatency;
+        if (histogram != null) {
+            histogram.record(micros);
+        }
+    }
+
+    private Task nextTask() {
+        Task task = retry;
+        if (task != null) {
+            retry = null;
+            return task;
+        }
+        while ((task = queue.poll()) != null) {
+            if (task instanceof PresenceUpdate) {
+                if (claim((PresenceUpdate) task)) return task;
+                continue; // Annulé par un regroupement
+            }
+            pending.decrementAndGet();
+            return task;
+        }
+        return null;
+    }
+
+    // Regroupe les messages consécutifs en tête de file, sans doubler une autre tâche
+    private List<ChatMessage> collectBatch(MessageTask first) {
+        List<ChatMessage> batch = new ArrayList<>();
+        batch.add(first.message);
+        Task next;
+        while (batch.size() < MAX_BATCH_SIZE && queue.peek() instanceof MessageTask) {
+            // La tête a pu être retirée entre peek et poll par un abandon sur file pleine
+            next = nextTask();
+            if (next == null) break;
+            if (!(next instanceof MessageTask)) {
+                retry = next;
+                break;
+            }
+            batch.add(((MessageTask) next).message);
+        }
+        return batch;
+    }
+
+    private void deliverBatch(List<ChatMessage> batch) throws RemoteException {
+        if (messageMode == MODE_CHAT_MESSAGES) {
+            try {
+                client.receiveChatMessages(batch);
+                return;
+            } catch (RemoteException e) {
+                if (!RmiCompat.isUnsupportedMethod(e)) throw e;
+                messageMode = MODE_STRING_BATCH;
+            }
+        }
+        List<String> texts = new ArrayList<>(batch.size());
+        for (ChatMessage message : batch) {
+            texts.add(message.toLegacyString());
+        }
+        if (messageMode == MODE_STRING_BATCH && texts.size() > 1) {
+            try {
+                client.receiveMessages(texts);
+                return;
+            } catch (RemoteException e) {
+                if (!RmiCompat.isUnsupportedMethod(e)) throw e;
+                messageMode = MODE_SINGLE_STRING;
+            }
+        }
+        for (String text : texts) {
+            client.receiveMessage(text);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+import javax.swing.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Mesures du client, lues par JMX et par la fenêtre de statistiques. Le retard de l'EDT est
+// mesuré par une sonde: une tâche vide postée à intervalle fixe, chronométrée jusqu'à son exécution.
+public class ClientMetrics implements ClientMetricsMBean {
+
+    private static final long EDT_PROBE_MS = Long.getLong("chat.metrics.edtProbeMs", 250);
+
+    private final LatencyHistogram edtLag = new LatencyHistogram();
+    private final LatencyHistogram append = new LatencyHistogram();
+    private final LatencyHistogram sendRtt = new LatencyHistogram();
+    private final LatencyHistogram heartbeatRtt = new LatencyHistogram();
+    private volatile int documentLength = 0;
+    private ScheduledExecutorService probe;
+
+    public synchronized void startEdtProbe() {
+        if (probe != null) return;
+        probe = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "chat-edt-probe");
+            thread.setDaemon(true);
+            return thread;
+        });
+        probe.scheduleAtFixedRate(() -> {
+            long posted = System.nanoTime();
+            SwingUtilities.invokeLater(() -> edtLag.record((System.nanoTime() - posted) / 1000));
+        }, EDT_PROBE_MS, EDT_PROBE_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public void recordAppend(long nanos) {
+        append.record(nanos / 1000);
+    }
+
+    public void recordSend(long nanos) {
+        sendRtt.record(nanos / 1000);
+    }
+
+    public void recordHeartbeat(long nanos) {
+        heartbeatRtt.record(nanos / 1000);
+    }
+
+    public void setDocumentLength(int length) {
+        documentLength = length;
+    }
+
+    public LatencyHistogram getEdtLag() {
+        return edtLag;
+    }
+
+    public LatencyHistogram getAppend() {
+        return append;
+    }
+
+    public LatencyHistogram getSendRtt() {
+        return sendRtt;
+    }
+
+    public LatencyHistogram getHeartbeatRtt() {
+        return heartbeatRtt;
+    }
+
+    @Override
+    public long getEdtLagP50Micros() {
+        return edtLag.getPercentile(50);
+    }
+
+    @Override
+    public long getEdtLagP99Micros() {
+        return edtLag.getPercentile(99);
+    }
+
+    @Override
+    public long getEdtLagMaxMicros() {
+        return edtLag.getMax();
+    }
+
+    @Override
+    public long getAppendP50Micros() {
+        return append.getPercentile(50);
+    }
+
+    @Override
+    public long getAppendP99Micros() {
+        return append.getPercentile(99);
+    }
+
+    @Override
+    public long getAppendCount() {
+        return append.getCount();
+    }
+
+    @Override
+    public long getSendRttP50Micros() {
+        return sendRtt.getPercentile(50);
+    }
+
+    @Override
+    public long getSendRttP99Micros() {
+        return sendRtt.getPercentile(99);
+    }
+
+    @Override
+    public long getHeartbeatRttP50Micros() {
+        return heartbeatRtt.getPercentile(50);
+    }
+
+    @Override
+    public long getHeartbeatRttP99Micros() {
+        return heartbeatRtt.getPercentile(99);
+    }
+
+    @Override
+    public int getDocumentLength() {
+        return documentLength;
+    }
+
+    @Override
+    public void resetStatistics() {
+        edtLag.reset();
+        append.reset();
+        sendRtt.reset();
+        heartbeatRtt.reset();
+    }
+}
@@ -0,0 +1,31 @@
+// Interface JMX du client (jconsole: chat:type=Client). Latences en microsecondes.
+public interface ClientMetricsMBean {
+
+    // Attente d'une tâche dans la file de l'EDT: une interface figée se voit ici
+    long getEdtLagP50Micros();
+
+    long getEdtLagP99Micros();
+
+    long getEdtLagMaxMicros();
+
+    // Insertion d'un lot de messages reçus dans les discussions
+    long getAppendP50Micros();
+
+    long getAppendP99Micros();
+
+    long getAppendCount();
+
+    // Aller-retour d'un envoi (réseau et traitement serveur) et d'un heartbeat (surtout réseau)
+    long getSendRttP50Micros();
+
+    long getSendRttP99Micros();
+
+    long getHeartbeatRttP50Micros();
+
+    long getHeartbeatRttP99Micros();
+
+    // Caractères dans les documents des onglets ouverts
+    int getDocumentLength();
+
+    void resetStatistics();
+}
@@ -0,0 +1,94 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Registre nom -> ClientDelivery du serveur. Les recherches par nom passent par
+// une ConcurrentHashMap (lectures sans verrou, écritures verrouillées par segment);
+// les diffusions et getOnlineUsers lisent un instantané immuable, reconstruit
+// seulement après un changement de membres et à la première lecture qui suit.
+public class ClientRegistry {
+
+    public static final class Snapshot {
+        private final long version;
+        private final ClientDelivery[] deliveries;
+        private final List<String> users;
+
+        Snapshot(long version, ClientDelivery[] deliveries, List<String> users) {
+            this.version = version;
+            this.deliveries = deliveries;
+            this.users = users;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        // Tableau partagé: à parcourir, pas à modifier
+        public ClientDelivery[] getDeliveries() {
+            return deliveries;
+        }
+
+        public List<String> getUsers() {
+            return users;
+        }
+    }
+
+    private final ConcurrentHashMap<String, ClientDelivery> clients = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong(0);
+    private final Object rebuildLock = new Object();
+    private volatile Snapshot snapshot = new Snapshot(0, new ClientDelivery[0], Collections.emptyList());
+
+    // Renvoie la livraison remplacée pour ce nom, ou null
+    public ClientDelivery register(ClientDelivery delivery) {
+        ClientDelivery previous = clients.put(delivery.getName(), delivery);
+        version.incrementAndGet();
+        return previous;
+    }
+
+    // Retire cette livraison précise (pas une plus récente enregistrée sous le même nom)
+    public boolean remove(ClientDelivery delivery) {
+        if (clients.remove(delivery.getName(), delivery)) {
+            version.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    public ClientDelivery get(String name) {
+        return clients.get(name);
+    }
+
+    public boolean contains(String name) {
+        return clients.containsKey(name);
+    }
+
+    public int size() {
+        return clients.size();
+    }
+
+    public Snapshot snapshot() {
+        Snapshot current = snapshot;
+        if (current.version == version.get()) {
+            return current;
+        }
+        synchronized (rebuildLock) {
+            // Lire la version avant la map: un changement concurrent forcera une nouvelle reconstruction
+            long target = version.get();
+            current = snapshot;
+            if (current.version == target) {
+                return current;
+            }
+            List<ClientDelivery> deliveries = new ArrayList<>(clients.values());
+            List<String> users = new ArrayList<>(deliveries.size());
+            for (ClientDelivery delivery : deliveries) {
+                users.add(delivery.getName());
+            }
+            current = new Snapshot(target, deliveries.toArray(new ClientDelivery[0]),
+                    Collections.unmodifiableList(users));
+            snapshot = current;
+            return current;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+// Résultat d'un envoi privé direct (ChatServer.sendDirectMessage)
+public enum DeliveryResult {
+    // Mis en file pour le destinataire connecté
+    DELIVERED,
+    // Destinataire déconnecté: conservé et remis à sa prochaine connexion
+    QUEUED_OFFLINE,
+    // Aucun utilisateur de ce nom ne s'est jamais connecté: message abandonné
+    UNKNOWN_USER
+}
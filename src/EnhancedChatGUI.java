@@ -1,17 +1,28 @@
+import javax.management.ObjectName;
 import javax.swing.*;
 import javax.swing.border.TitledBorder;
 import javax.swing.text.*;
 import java.awt.*;
 import java.awt.event.*;
-import java.rmi.registry.LocateRegistry;
-import java.rmi.registry.Registry;
-import java.time.LocalTime;
-import java.time.format.DateTimeFormatter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.rmi.RemoteException;
 import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
 
 public class EnhancedChatGUI extends JFrame {
-    private JTextPane chatArea;
+    private JTabbedPane roomTabs; // Un onglet par salon rejoint
+    private final Map<String, RoomView> roomViews = new LinkedHashMap<>(); // Modifiée sur l'EDT
+    private final StyleContext styleContext = new StyleContext(); // Styles partagés par tous les onglets
+    private InboundMessageQueue<ChatMessage> inboundMessages; // Messages reçus, vidés sur l'EDT une fois par trame
+    private final EnumMap<MessageStyle, Style> messageStyles = new EnumMap<>(MessageStyle.class);
+    private Style timestampStyle;
+    private final TimestampCache timestampCache = new TimestampCache();
     private JTextField messageField;
     private JButton sendButton;
     private JTextField nameField;
@@ -23,10 +34,14 @@ public class EnhancedChatGUI extends JFrame {
     private JPanel chatPanel;
     private JLabel statusLabel;
     private JList<String> userList;
-    private DefaultListModel<String> userListModel;
+    private UserListModel userListModel;
     private JCheckBox soundCheckBox;
     private JButton emojiButton;
     private JButton toggleUsersButton; // Nouveau bouton pour afficher/masquer la liste des utilisateurs
+    private JButton statsButton;
+    private JTextField searchField;
+    private JButton joinRoomButton;
+    private JButton leaveRoomButton;
     private JScrollPane userScrollPane; // Pour pouvoir masquer/afficher la liste
     private JSplitPane splitPane; // Pour gérer l'affichage dynamique
 
@@ -34,9 +49,62 @@ public class EnhancedChatGUI extends JFrame {
     private ChatClientImpl client;
     private String userName;
     private boolean connected = false;
-    private List<String> messageHistory;
-    private int historyIndex = -1;
+    // Reprise automatique après une coupure du lien (état modifié sur l'EDT)
+    private ChatTransport transport = ChatTransport.RMI;
+    private String serverHost;
+    private int serverPort;
+    private volatile long sessionToken = 0; // 0 = serveur sans sessions
+    private boolean reconnecting = false;
+    private final ReconnectBackoff backoff = new ReconnectBackoff(500, 30_000);
+    private Timer reconnectTimer;
+    private final Timer heartbeatTimer = new Timer(HEARTBEAT_MS, e -> sendHeartbeat());
+    private volatile boolean heartbeatUnsupported = false;
+    private long lastSeenSeq = 0; // Plus grand numéro de journal reçu
+    // Numéros des messages privés déjà affichés: un rejeu peut les renvoyer
+    private final Map<Long, Boolean> seenPrivateSeqs = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+            return size() > MAX_PENDING_ECHOES;
+        }
+    };
+    private final ClientMetrics metrics = new ClientMetrics();
+    private final OutboundSender outbound = new OutboundSender(metrics);
+    private StatsDialog statsDialog; // Créée à la première ouverture
+    private final SearchIndex searchIndex = new SearchIndex(); // Alimenté par les RoomView
+    private SearchDialog searchDialog; // Créée à la première recherche
+    // Échos locaux en attente du retour du serveur, par identifiant de message (EDT)
+    private final Map<Long, PendingEcho> pendingEchoes = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, PendingEcho> eldest) {
+            return size() > MAX_PENDING_ECHOES;
+        }
+    };
+    private static final int MAX_PENDING_ECHOES = 256;
+    // Bien en dessous du bail du serveur (15 s par défaut): deux heartbeats perdus sont tolérés
+    private static final int HEARTBEAT_MS = Integer.getInteger("chat.heartbeatMs", 5000);
+    private static final int HISTORY_PAGE_SIZE = 50; // Messages d'historique chargés à l'ouverture d'un salon
+    // Messages manqués depuis la dernière session: au-delà, seule la dernière page est affichée
+    private static final int DELTA_PAGE_SIZE = 500; // Plafond d'une page côté serveur
+    private static final boolean CACHE_ENABLED = Boolean.parseBoolean(System.getProperty("chat.cache.enabled", "true"));
+    private static final String DIRECT_COMMAND = "/msg ";
+
+    // Écho local et onglet où il a été affiché
+    private static final class PendingEcho {
+        final ChatTranscript transcript;
+        final ChatTranscript.Entry entry;
+
+        PendingEcho(ChatTranscript transcript, ChatTranscript.Entry entry) {
+            this.transcript = transcript;
+            this.entry = entry;
+        }
+    }
+    private final InputHistory inputHistory = new InputHistory();
+    private LocalHistoryCache historyCache; // Cache du serveur et du nom courants, null sans cache (EDT)
+    private boolean historyRestored = false; // Le cache n'est réaffiché qu'à la première connexion
+    // Messages du cache pour des salons dont l'onglet n'existe pas encore
+    private final Map<String, List<LocalHistoryCache.Cached>> restoredByRoom = new HashMap<>();
     private boolean usersListVisible = true; // État de visibilité de la liste
+    private long presenceVersion = -1; // Version de la liste reçue (-1 = inconnue), modifiée sur l'EDT
 
     // Couleurs modernes et améliorées
     private final Color BACKGROUND_COLOR = new Color(250, 252, 255);        // Blanc cassé très doux
@@ -58,10 +126,10 @@ public class EnhancedChatGUI extends JFrame {
     // Couleur de fond pour la zone de chat - ton très subtil
     private final Color CHAT_BACKGROUND = new Color(252, 253, 255);
 
-    private int lamportClock = 0;
+    // Horloge logique partagée entre l'EDT (envoi) et les threads RMI (réception)
+    private final LogicalClock clock = LogicalClock.create();
 
     public EnhancedChatGUI() {
-        messageHistory = new ArrayList<>();
         initializeComponents();
         setupLayout();
         setupEventHandlers();
@@ -71,10 +139,11 @@ public class EnhancedChatGUI extends JFrame {
         setSize(800, 600);
         setLocationRelativeTo(null);
         showConnectionPanel();
+        metrics.startEdtProbe();
     }
 
-    private synchronized void incrementLamportClockOnSend() {
-        lamportClock++;
+    public ClientMetrics getMetrics() {
+        return metrics;
     }
 
     private void initializeComponents() {
@@ -97,12 +166,17 @@ public class EnhancedChatGUI extends JFrame {
 
         connectionPanel = new JPanel();
 
-        // Chat components avec design amélioré
-        chatArea = new JTextPane();
-        chatArea.setEditable(false);
-        chatArea.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 13));
-        chatArea.setBackground(CHAT_BACKGROUND);
-        chatArea.setMargin(new Insets(10, 10, 10, 10));
+        // Onglets des salons; la zone de texte de chacun est créée à son premier affichage
+        roomTabs = new JTabbedPane();
+        roomTabs.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 13));
+        registerMessageStyles(styleContext);
+        addRoomView(ChatMessage.DEFAULT_ROOM);
+
+        joinRoomButton = new JButton("➕ Salon");
+        joinRoomButton.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 12));
+        leaveRoomButton = new JButton("➖ Quitter le salon");
+        leaveRoomButton.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 12));
+        leaveRoomButton.setEnabled(false);
 
         messageField = new JTextField();
         messageField.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 14));
@@ -116,7 +190,7 @@ public class EnhancedChatGUI extends JFrame {
         sendButton.setEnabled(false);
 
         // User list avec amélioration
-        userListModel = new DefaultListModel<>();
+        userListModel = new UserListModel();
         userList = new JList<>(userListModel);
         userList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         userList.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 12));
@@ -126,6 +200,13 @@ public class EnhancedChatGUI extends JFrame {
         toggleUsersButton = new JButton("👥 Masquer Utilisateurs");
         toggleUsersButton.setFont(new Font(Font.SANS_SERIF, Font.BOLD, 11));
 
+        statsButton = new JButton("📊 Stats");
+        statsButton.setFont(new Font(Font.SANS_SERIF, Font.BOLD, 11));
+
+        searchField = new JTextField(12);
+        searchField.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 12));
+        searchField.setToolTipText("🔍 Rechercher dans la discussion (Entrée)");
+
         // Status and options avec amélioration
         statusLabel = new JLabel("🔴 Déconnecté");
         statusLabel.setFont(new Font(Font.SANS_SERIF, Font.BOLD, 12));
@@ -212,15 +293,16 @@ public class EnhancedChatGUI extends JFrame {
 
         JPanel headerControls = new JPanel(new FlowLayout(FlowLayout.RIGHT, 5, 0));
         headerControls.setBackground(CARD_COLOR);
+        headerControls.add(new JLabel("🔍"));
+        headerControls.add(searchField);
+        headerControls.add(joinRoomButton);
+        headerControls.add(leaveRoomButton);
         headerControls.add(toggleUsersButton);
+        headerControls.add(statsButton);
         headerControls.add(soundCheckBox);
         headerPanel.add(headerControls, BorderLayout.EAST);
 
-        // Zone de chat principale
-        JScrollPane chatScrollPane = new JScrollPane(chatArea);
-        chatScrollPane.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED);
-        chatScrollPane.setBorder(BorderFactory.createEmptyBorder());
-        chatScrollPane.getViewport().setBackground(CHAT_BACKGROUND);
+        inboundMessages = new InboundMessageQueue<>(this::insertMessages);
 
         // Liste des utilisateurs avec style
         userScrollPane = new JScrollPane(userList);
@@ -234,7 +316,7 @@ public class EnhancedChatGUI extends JFrame {
         ));
 
         // Split pane pour chat et utilisateurs
-        splitPane = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, chatScrollPane, userScrollPane);
+        splitPane = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, roomTabs, userScrollPane);
         splitPane.setResizeWeight(0.75);
         splitPane.setBorder(BorderFactory.createEmptyBorder());
         splitPane.setDividerSize(1);
@@ -325,6 +407,7 @@ public class EnhancedChatGUI extends JFrame {
         styleButton(disconnectButton, DISCONNECT_COLOR);
         styleButton(sendButton, PRIMARY_COLOR);
         styleButton(toggleUsersButton, SECONDARY_COLOR);
+        styleButton(statsButton, SECONDARY_COLOR);
 
         // Emoji button avec style spécial et UI personnalisé
         emojiButton.setUI(new javax.swing.plaf.basic.BasicButtonUI());
@@ -420,6 +503,12 @@ public class EnhancedChatGUI extends JFrame {
         });
         // Toggle users button - NOUVEAU
         toggleUsersButton.addActionListener(e -> toggleUsersList());
+        statsButton.addActionListener(e -> showStats());
+        searchField.addActionListener(e -> search());
+
+        joinRoomButton.addActionListener(e -> joinRoom());
+        leaveRoomButton.addActionListener(e -> leaveRoom());
+        roomTabs.addChangeListener(e -> onRoomSelected());
 
         // Enter key in name field
         nameField.addKeyListener(new KeyAdapter() {
@@ -450,7 +539,11 @@ public class EnhancedChatGUI extends JFrame {
             @Override
             public void windowClosing(WindowEvent e) {
                 if (connected) {
-                    disconnectFromServer();
+                    disconnectBeforeExit();
+                }
+                if (historyCache != null) {
+                    historyCache.close();
+                    historyCache = null;
                 }
             }
         });
@@ -496,6 +589,7 @@ public class EnhancedChatGUI extends JFrame {
     private void showChatPanel() {
         getContentPane().removeAll();
         add(chatPanel, BorderLayout.CENTER);
+        onRoomSelected();
         revalidate();
         repaint();
         messageField.requestFocus();
@@ -503,7 +597,8 @@ public class EnhancedChatGUI extends JFrame {
 
     private void connectToServer() {
         String name = nameField.getText().trim();
-        String serverHost = serverField.getText().trim();
+        String address = serverField.getText().trim();
+        String host = ChatTransport.hostOf(address);
         int port = (Integer) portSpinner.getValue();
 
         if (name.isEmpty()) {
@@ -511,49 +606,277 @@ public class EnhancedChatGUI extends JFrame {
             return;
         }
 
-        if (serverHost.isEmpty()) {
+        if (host.isEmpty()) {
             showErrorDialog("Veuillez entrer l'adresse du serveur!");
             return;
         }
 
+        userName = name;
+        ChatTransport selected = ChatTransport.forAddress(address);
+        transport = selected;
+        serverHost = host;
+        serverPort = port;
+        connectButton.setEnabled(false);
+        updateStatus("🟡 Connexion à " + host + ":" + port + "...");
+
+        // Connexion et enregistrement hors de l'EDT, cache local lu pendant ce temps
+        boolean restore = !historyRestored;
+        new SwingWorker<ChatServer, Void>() {
+            private LocalHistory localHistory;
+
+            @Override
+            protected ChatServer doInBackground() throws Exception {
+                localHistory = openLocalHistory(host, port, name, restore);
+                try {
+                    client = new ChatClientImpl(EnhancedChatGUI.this);
+                    ChatServer found = selected.connect(host, port, client);
+                    try {
+                        sessionToken = openSession(found, name);
+                    } catch (RemoteException e) {
+                        selected.close(found);
+                        throw e;
+                    }
+                    return found;
+                } catch (Exception e) {
+                    if (localHistory != null) {
+                        localHistory.cache.close();
+                    }
+                    throw e;
+                }
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    server = get();
+                    outbound.setServer(server);
+                    heartbeatUnsupported = false;
+                    adoptLocalHistory(localHistory);
+
+                    connected = true;
+                    connectButton.setEnabled(false);
+                    disconnectButton.setEnabled(true);
+                    sendButton.setEnabled(true);
+
+                    showChatPanel();
+                    loadHistory(roomViews.get(ChatMessage.DEFAULT_ROOM));
+                    heartbeatTimer.start();
+                    updateStatus("🟢 Connecté à " + host + ":" + port + " en tant que " + userName);
+                } catch (Exception e) {
+                    Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+                    connectButton.setEnabled(true);
+                    updateStatus("🔴 Déconnecté");
+                    showErrorDialog("Échec de la connexion au serveur: " + cause.getMessage());
+                    cause.printStackTrace();
+                }
+            }
+        }.execute();
+    }
+
+    // Hors EDT: session reprenable, ou simple enregistrement auprès d'un serveur sans sessions
+    private long openSession(ChatServer target, String name) throws RemoteException {
         try {
-            userName = name;
-            Registry registry = LocateRegistry.getRegistry(serverHost, port);
-            server = (ChatServer) registry.lookup("ChatServer");
-            client = new ChatClientImpl(this);
-            server.registerClient(userName, client);
+            return target.openSession(name, client);
+        } catch (RemoteException e) {
+            if (!RmiCompat.isUnsupportedMethod(e)) throw e;
+            target.registerClient(name, client);
+            return 0;
+        }
+    }
+
+    // Renouvelle le bail côté serveur et détecte un serveur arrêté ou qui nous a retirés
+    private void sendHeartbeat() {
+        if (!connected || reconnecting) return;
+        ChatServer currentServer = server;
+        String name = userName;
+        new SwingWorker<Boolean, Void>() {
+            @Override
+            protected Boolean doInBackground() throws Exception {
+                long start = System.nanoTime();
+                if (!heartbeatUnsupported) {
+                    try {
+                        boolean registered = currentServer.heartbeat(name);
+                        metrics.recordHeartbeat(System.nanoTime() - start);
+                        return registered;
+                    } catch (RemoteException e) {
+                        if (!RmiCompat.isUnsupportedMethod(e)) throw e;
+                        heartbeatUnsupported = true; // Serveur sans bail: simple vérification de présence
+                        start = System.nanoTime();
+                    }
+                }
+                boolean online = currentServer.isUserOnline(name);
+                metrics.recordHeartbeat(System.nanoTime() - start);
+                return online;
+            }
 
-            connected = true;
-            connectButton.setEnabled(false);
-            disconnectButton.setEnabled(true);
-            sendButton.setEnabled(true);
+            @Override
+            protected void done() {
+                if (currentServer != server) return;
+                try {
+                    if (!get()) {
+                        startReconnect("Session interrompue par le serveur");
+                    }
+                } catch (Exception e) {
+                    Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+                    if (cause instanceof RemoteException && RmiCompat.isConnectionFailure((RemoteException) cause)) {
+                        startReconnect("Connexion perdue");
+                    }
+                }
+            }
+        }.execute();
+    }
 
-            showChatPanel();
-            updateStatus("🟢 Connecté à " + serverHost + ":" + port + " en tant que " + userName);
+    private void startReconnect(String reason) {
+        if (!connected || reconnecting) return;
+        reconnecting = true;
+        sendButton.setEnabled(false);
+        backoff.reset();
+        scheduleReconnect(reason);
+    }
 
-        } catch (Exception e) {
-            showErrorDialog("Échec de la connexion au serveur: " + e.getMessage());
-            e.printStackTrace();
+    private void scheduleReconnect(String reason) {
+        long delay = backoff.nextDelayMillis();
+        updateStatus("🟡 " + reason + ", nouvelle tentative dans " + (delay + 999) / 1000 + " s...");
+        reconnectTimer = new Timer((int) delay, e -> attemptReconnect());
+        reconnectTimer.setRepeats(false);
+        reconnectTimer.start();
+    }
+
+    // Nouvelle connexion puis reprise de la session à partir du dernier numéro reçu;
+    // si le serveur ne la connaît plus (redémarrage, délai dépassé), session neuve
+    private void attemptReconnect() {
+        if (!reconnecting) return;
+        ChatTransport current = transport;
+        ChatServer previous = server;
+        String host = serverHost;
+        int port = serverPort;
+        String name = userName;
+        long token = sessionToken;
+        long lastSeq = resumeSeq();
+        boolean[] resumed = new boolean[1];
+
+        new SwingWorker<ChatServer, Void>() {
+            @Override
+            protected ChatServer doInBackground() throws Exception {
+                current.close(previous);
+                ChatServer found = current.connect(host, port, client);
+                try {
+                    if (token != 0) {
+                        try {
+                            resumed[0] = found.resumeSession(name, token, lastSeq, client);
+                        } catch (RemoteException e) {
+                            if (!RmiCompat.isUnsupportedMethod(e)) throw e;
+                        }
+                    }
+                    if (!resumed[0]) {
+                        sessionToken = openSession(found, name);
+                    }
+                } catch (RemoteException e) {
+                    current.close(found);
+                    throw e;
+                }
+                return found;
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    ChatServer found = get();
+                    if (!reconnecting) { // Déconnexion demandée pendant la tentative
+                        current.close(found);
+                        return;
+                    }
+                    server = found;
+                    outbound.setServer(found);
+                    heartbeatUnsupported = false;
+                    reconnecting = false;
+                    backoff.reset();
+                    sendButton.setEnabled(true);
+                    updateStatus(resumed[0]
+                            ? "🟢 Reconnecté à " + host + ":" + port + " en tant que " + name
+                            : "🟢 Reconnecté à " + host + ":" + port + " (nouvelle session, messages manqués perdus)");
+                } catch (Exception e) {
+                    if (!reconnecting) return;
+                    Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+                    scheduleReconnect("Serveur injoignable (" + cause.getMessage() + ")");
+                }
+            }
+        }.execute();
+    }
+
+    // Chaque salon reçoit ses messages dans l'ordre des numéros: reprendre après le plus petit
+    // des derniers numéros par salon suffit, les doublons éventuels sont écartés à l'affichage
+    private long resumeSeq() {
+        long seq = lastSeenSeq;
+        for (RoomView view : roomViews.values()) {
+            if (view.getNewestSeq() > 0) {
+                seq = Math.min(seq, view.getNewestSeq());
+            }
         }
+        return seq;
     }
 
     private void disconnectFromServer() {
-        if (connected) {
-            try {
-                server.unregisterClient(userName);
-                connected = false;
-                connectButton.setEnabled(true);
-                disconnectButton.setEnabled(false);
-                sendButton.setEnabled(false);
+        if (!connected) return;
+        ChatServer currentServer = server;
+        ChatTransport current = transport;
+        String name = userName;
+        markDisconnected();
 
-                updateStatus("🔴 Déconnecté");
-                appendSystemMessage("=== Déconnecté du serveur ===");
-                userListModel.clear();
+        new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() throws Exception {
+                try {
+                    currentServer.unregisterClient(name);
+                } finally {
+                    current.close(currentServer);
+                }
+                return null;
+            }
 
-            } catch (Exception e) {
-                e.printStackTrace();
+            @Override
+            protected void done() {
+                try {
+                    get();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
             }
+        }.execute();
+    }
+
+    // À la fermeture de la fenêtre la JVM s'arrête juste après: l'appel reste synchrone
+    private void disconnectBeforeExit() {
+        if (!connected) return;
+        try {
+            server.unregisterClient(userName);
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            transport.close(server);
+        }
+        markDisconnected();
+    }
+
+    private void markDisconnected() {
+        connected = false;
+        reconnecting = false;
+        sessionToken = 0;
+        heartbeatTimer.stop();
+        if (reconnectTimer != null) {
+            reconnectTimer.stop();
         }
+        connectButton.setEnabled(true);
+        disconnectButton.setEnabled(false);
+        sendButton.setEnabled(false);
+
+        updateStatus("🔴 Déconnecté");
+        appendSystemMessage("=== Déconnecté du serveur ===");
+        userListModel.clear();
+        presenceVersion = -1;
+        pendingEchoes.clear();
+        // Le serveur ne garde pas les salons d'une session terminée: seul le salon par défaut reste
+        updateRooms(List.of(ChatMessage.DEFAULT_ROOM));
     }
 
     private void appendSystemMessage(String s) {
@@ -566,46 +889,114 @@ public class EnhancedChatGUI extends JFrame {
         String message = messageField.getText().trim();
         if (message.isEmpty()) return;
 
-        try {
-            incrementLamportClockOnSend();
+        long time = clock.tick();
 
-            // Add to history
-            messageHistory.add(message);
-            if (messageHistory.size() > 50) { // Keep last 50 messages
-                messageHistory.remove(0);
-            }
-            historyIndex = -1;
-
-            server.sendMessage(userName, message, lamportClock);
-            messageField.setText("");
+        inputHistory.add(message);
+        if (historyCache != null) {
+            historyCache.appendInput(message);
+        }
+        messageField.setText("");
 
-        } catch (Exception e) {
-            showErrorDialog("Échec de l'envoi du message: " + e.getMessage());
-            e.printStackTrace();
+        if (message.startsWith(DIRECT_COMMAND)) {
+            sendDirectMessage(message.substring(DIRECT_COMMAND.length()).trim(), time);
+            return;
         }
-    }
 
-    private void navigateHistory(boolean up) {
-        if (messageHistory.isEmpty()) return;
+        RoomView view = currentRoomView();
+        ChatMessage outgoing = ChatMessage.publicMessage(userName, message, time)
+                .withClientMessageId(outbound.nextMessageId())
+                .withRoom(view.getRoom());
+
+        // Écho local immédiat; un serveur texte renverrait le message sans identifiant, donc pas d'écho
+        PendingEcho echo = null;
+        if (!outbound.isLegacyServer()) {
+            ChatTranscript.Entry entry = createEntry(outgoing).withStatus(SendStatus.PENDING);
+            echo = new PendingEcho(view.appendEcho(entry), entry);
+            pendingEchoes.put(outgoing.getClientMessageId(), echo);
+        }
 
-        if (up) {
-            if (historyIndex == -1) {
-                historyIndex = messageHistory.size() - 1;
-            } else if (historyIndex > 0) {
-                historyIndex--;
+        PendingEcho localEcho = echo;
+        outbound.submit(outgoing, (sent, error) -> {
+            if (localEcho != null) {
+                localEcho.transcript.updateStatus(localEcho.entry, error == null ? SendStatus.SENT : SendStatus.FAILED);
             }
-        } else {
-            if (historyIndex != -1 && historyIndex < messageHistory.size() - 1) {
-                historyIndex++;
-            } else {
-                historyIndex = -1;
-                messageField.setText("");
-                return;
+            if (error != null) {
+                pendingEchoes.remove(sent.getClientMessageId());
+                updateStatus("⚠ Échec de l'envoi du message: " + error.getMessage());
+                error.printStackTrace();
+                if (error instanceof RemoteException && RmiCompat.isConnectionFailure((RemoteException) error)) {
+                    startReconnect("Connexion perdue");
+                }
             }
+        });
+    }
+
+    // "/msg nom texte": un seul appel distant, dont le résultat dit si le message est remis,
+    // conservé pour un destinataire déconnecté ou refusé (nom inconnu)
+    private void sendDirectMessage(String command, long time) {
+        int space = command.indexOf(' ');
+        String text = space > 0 ? command.substring(space + 1).trim() : "";
+        if (text.isEmpty()) {
+            updateStatus("⚠ Usage: " + DIRECT_COMMAND + "nom message");
+            return;
         }
+        String recipient = command.substring(0, space);
+        ChatMessage outgoing = ChatMessage.privateMessage(userName, recipient, text, time)
+                .withClientMessageId(outbound.nextMessageId());
+        // L'écho local reste en attente: la copie renvoyée par le serveur ne sera pas affichée deux fois
+        ChatTranscript.Entry entry = createEntry(outgoing).withStatus(SendStatus.PENDING);
+        PendingEcho echo = new PendingEcho(currentRoomView().appendEcho(entry), entry);
+        pendingEchoes.put(outgoing.getClientMessageId(), echo);
+
+        ChatServer target = server;
+        new SwingWorker<DeliveryResult, Void>() {
+            @Override
+            protected DeliveryResult doInBackground() throws Exception {
+                try {
+                    return target.sendDirectMessage(outgoing);
+                } catch (RemoteException e) {
+                    if (!RmiCompat.isUnsupportedMethod(e)) throw e;
+                    // Serveur plus ancien: le résultat arrive en message système
+                    target.sendChatMessage(outgoing);
+                    return DeliveryResult.DELIVERED;
+                }
+            }
 
-        if (historyIndex >= 0 && historyIndex < messageHistory.size()) {
-            messageField.setText(messageHistory.get(historyIndex));
+            @Override
+            protected void done() {
+                try {
+                    DeliveryResult result = get();
+                    if (result == DeliveryResult.UNKNOWN_USER) {
+                        pendingEchoes.remove(outgoing.getClientMessageId());
+                        echo.transcript.updateStatus(echo.entry, SendStatus.FAILED);
+                        updateStatus("⚠ " + recipient + " est inconnu: message non envoyé");
+                        return;
+                    }
+                    if (echo.entry.status != SendStatus.SENT) {
+                        echo.transcript.updateStatus(echo.entry, SendStatus.SENT);
+                    }
+                    if (result == DeliveryResult.QUEUED_OFFLINE) {
+                        updateStatus("📭 " + recipient + " est hors ligne: le message lui sera remis à sa connexion");
+                    }
+                } catch (Exception e) {
+                    Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+                    pendingEchoes.remove(outgoing.getClientMessageId());
+                    echo.transcript.updateStatus(echo.entry, SendStatus.FAILED);
+                    updateStatus("⚠ Échec de l'envoi du message: " + cause.getMessage());
+                    if (cause instanceof RemoteException && RmiCompat.isConnectionFailure((RemoteException) cause)) {
+                        startReconnect("Connexion perdue");
+                    }
+                }
+            }
+        }.execute();
+    }
+
+    private void navigateHistory(boolean up) {
+        String line = up ? inputHistory.previous() : inputHistory.next();
+        if (line != null) {
+            messageField.setText(line);
+        } else if (!up) {
+            messageField.setText(""); // Revenu après la ligne la plus récente
         }
     }
 
@@ -622,73 +1013,513 @@ public class EnhancedChatGUI extends JFrame {
         }
     }
 
+    // Appelé par les threads RMI: les messages sont regroupés et insérés par trame
     public void appendMessage(String message) {
-        SwingUtilities.invokeLater(() -> {
-            int receivedLamport = 0;
-            try {
-                if (message.startsWith("[")) {
-                    int endIdx = message.indexOf("]");
-                    if (endIdx > 1) {
-                        String lamportStr = message.substring(1, endIdx);
-                        receivedLamport = Integer.parseInt(lamportStr);
-                        lamportClock = Math.max(lamportClock, receivedLamport) + 1;
-                    }
+        ChatMessage decoded = ChatMessage.fromLegacy(message);
+        if (decoded.getLamportTime() > 0) {
+            clock.merge(decoded.getLamportTime());
+        }
+        inboundMessages.push(decoded);
+    }
+
+    // Format texte d'un ancien serveur: décodé une fois à la réception
+    public void appendMessages(List<String> messages) {
+        List<ChatMessage> decoded = new ArrayList<>(messages.size());
+        for (String message : messages) {
+            decoded.add(ChatMessage.fromLegacy(message));
+        }
+        mergeClock(decoded);
+        inboundMessages.pushAll(decoded);
+    }
+
+    public void appendChatMessages(List<ChatMessage> messages) {
+        mergeClock(messages);
+        inboundMessages.pushAll(messages);
+    }
+
+    // Fusion dès la réception, sur le thread RMI, sans attendre l'affichage
+    private void mergeClock(List<ChatMessage> messages) {
+        for (ChatMessage message : messages) {
+            if (message.getLamportTime() > 0) {
+                clock.merge(message.getLamportTime());
+            }
+        }
+    }
+
+    private void insertMessages(List<ChatMessage> messages) {
+        long start = System.nanoTime();
+        // Regroupées par onglet: une seule insertion par salon et par trame
+        Map<RoomView, List<ChatTranscript.Entry>> entriesByRoom = new LinkedHashMap<>();
+        List<LocalHistoryCache.Cached> cached = new ArrayList<>();
+        for (ChatMessage message : messages) {
+            RoomView view = targetView(message);
+            long seq = message.getSeq();
+            if (seq > 0) {
+                // Un rejeu après reprise de session peut renvoyer des messages déjà affichés
+                if (message.getKind() == MessageKind.PRIVATE) {
+                    if (seenPrivateSeqs.put(seq, Boolean.TRUE) != null) continue;
+                } else if (view.getRoom().equals(message.getRoom())) {
+                    if (seq <= view.getNewestSeq()) continue;
+                    view.noteSeq(seq);
                 }
-            } catch (NumberFormatException e) {
+                lastSeenSeq = Math.max(lastSeenSeq, seq);
             }
+            PendingEcho echo = message.getClientMessageId() != 0 && message.getSender() != null
+                    && message.getSender().equals(userName)
+                    ? pendingEchoes.remove(message.getClientMessageId())
+                    : null;
+            if (echo != null) {
+                // Notre propre message revenu du serveur: déjà affiché en écho local
+                if (echo.entry.status != SendStatus.SENT) {
+                    echo.transcript.updateStatus(echo.entry, SendStatus.SENT);
+                }
+                cached.add(new LocalHistoryCache.Cached(echo.entry.timestamp, message));
+                continue;
+            }
+            ChatTranscript.Entry entry = createEntry(message);
+            entriesByRoom.computeIfAbsent(view, key -> new ArrayList<>()).add(entry);
+            cached.add(new LocalHistoryCache.Cached(entry.timestamp, message));
+        }
+        if (historyCache != null && !cached.isEmpty()) {
+            historyCache.appendTranscript(cached);
+        }
+        RoomView current = currentRoomView();
+        for (Map.Entry<RoomView, List<ChatTranscript.Entry>> entry : entriesByRoom.entrySet()) {
+            entry.getKey().append(entry.getValue(), entry.getKey() == current);
+        }
+        if (entriesByRoom.size() > 1 || !entriesByRoom.containsKey(current)) {
+            refreshRoomTitles();
+        }
+        if (!entriesByRoom.isEmpty()) {
+            metrics.recordAppend(System.nanoTime() - start);
+            updateDocumentLength();
+        }
+    }
 
-            String timestamp = LocalTime.now().format(DateTimeFormatter.ofPattern("HH:mm"));
-            String formattedMessage = "[" + timestamp + "] " + message;
+    private void updateDocumentLength() {
+        int length = 0;
+        for (RoomView view : roomViews.values()) {
+            length += view.getDocumentLength();
+        }
+        metrics.setDocumentLength(length);
+    }
 
-            try {
-                StyledDocument doc = chatArea.getStyledDocument();
-
-                // Style pour le timestamp
-                SimpleAttributeSet timestampAttrs = new SimpleAttributeSet();
-                StyleConstants.setForeground(timestampAttrs, TIMESTAMP_COLOR);
-                StyleConstants.setFontSize(timestampAttrs, 11);
-                StyleConstants.setItalic(timestampAttrs, true);
-
-                // Style pour le message
-                SimpleAttributeSet messageAttrs = new SimpleAttributeSet();
-
-                if (message.startsWith("===")) {
-                    StyleConstants.setForeground(messageAttrs, SYSTEM_MESSAGE_COLOR);
-                    StyleConstants.setItalic(messageAttrs, true);
-                    StyleConstants.setFontSize(messageAttrs, 12);
-                } else if (message.startsWith("[PRIVATE]")) {
-                    StyleConstants.setForeground(messageAttrs, PRIVATE_MESSAGE_COLOR);
-                    StyleConstants.setBold(messageAttrs, true);
-                    StyleConstants.setFontSize(messageAttrs, 13);
-                } else if (message.startsWith(userName + ":")) {
-                    StyleConstants.setForeground(messageAttrs, OWN_MESSAGE_COLOR);
-                    StyleConstants.setBold(messageAttrs, true);
-                    StyleConstants.setFontSize(messageAttrs, 13);
-                } else {
-                    StyleConstants.setForeground(messageAttrs, USER_MESSAGE_COLOR);
-                    StyleConstants.setFontSize(messageAttrs, 13);
+    private void showStats() {
+        if (statsDialog == null) {
+            statsDialog = StatsDialog.create(this, metrics);
+        }
+        updateDocumentLength();
+        statsDialog.setVisible(true);
+    }
+
+    // La recherche s'exécute sur le thread de l'index; seul l'affichage revient sur l'EDT
+    private void search() {
+        String query = searchField.getText().trim();
+        if (query.isEmpty()) return;
+        long start = System.nanoTime();
+        searchIndex.search(query).whenComplete((hits, error) -> SwingUtilities.invokeLater(() -> {
+            if (error != null) {
+                updateStatus("⚠ Recherche impossible: " + error.getMessage());
+                return;
+            }
+            if (searchDialog == null) {
+                searchDialog = SearchDialog.create(this, this::revealHit);
+            }
+            searchDialog.showResults(query, hits, (System.nanoTime() - start) / 1000);
+        }));
+    }
+
+    private void revealHit(SearchIndex.Hit hit) {
+        RoomView view = roomViews.get(hit.getRoom());
+        if (view == null) {
+            updateStatus("⚠ Vous avez quitté #" + hit.getRoom());
+            return;
+        }
+        roomTabs.setSelectedComponent(view.getComponent());
+        if (!view.reveal(hit.getEntry())) {
+            updateStatus("⚠ Message trop ancien, plus affiché dans #" + hit.getRoom());
+        }
+    }
+
+    // Les messages privés s'affichent dans l'onglet courant; un salon inconnu retombe sur le salon par défaut
+    private RoomView targetView(ChatMessage message) {
+        if (message.getKind() == MessageKind.PRIVATE) {
+            return currentRoomView();
+        }
+        RoomView view = roomViews.get(message.getRoom());
+        return view != null ? view : roomViews.get(ChatMessage.DEFAULT_ROOM);
+    }
+
+    private RoomView currentRoomView() {
+        int index = roomTabs.getSelectedIndex();
+        RoomView view = index >= 0 ? findRoomView(roomTabs.getComponentAt(index)) : null;
+        return view != null ? view : roomViews.get(ChatMessage.DEFAULT_ROOM);
+    }
+
+    private RoomView findRoomView(Component component) {
+        for (RoomView view : roomViews.values()) {
+            if (view.getComponent() == component) {
+                return view;
+            }
+        }
+        return null;
+    }
+
+    private void addRoomView(String room) {
+        RoomView view = new RoomView(room, this::createChatArea, styleContext, searchIndex);
+        roomViews.put(room, view);
+        roomTabs.addTab(view.getTitle(), view.getComponent());
+        List<LocalHistoryCache.Cached> restored = restoredByRoom.remove(room);
+        if (restored != null) {
+            restoreInto(view, restored);
+        }
+        if (connected) {
+            loadHistory(view);
+        }
+    }
+
+    // Résultat de loadHistory
+    private static final class HistoryPage {
+        final List<ChatMessage> messages;
+        final boolean gap;   // Trop de messages manqués: seule la dernière page est là
+        final boolean reset; // Journal du serveur recommencé depuis la mise en cache
+
+        HistoryPage(List<ChatMessage> messages, boolean gap, boolean reset) {
+            this.messages = messages;
+            this.gap = gap;
+            this.reset = reset;
+        }
+    }
+
+    // Derniers messages du salon journalisés par le serveur, chargés hors de l'EDT. Si le cache
+    // local a déjà affiché le salon, seuls les messages postérieurs au dernier du cache sont demandés.
+    private void loadHistory(RoomView view) {
+        ChatServer currentServer = server;
+        long cachedSeq = view.getRestoredSeq();
+        new SwingWorker<HistoryPage, Void>() {
+            @Override
+            protected HistoryPage doInBackground() throws Exception {
+                try {
+                    if (cachedSeq == 0) {
+                        return new HistoryPage(currentServer.getHistory(view.getRoom(), 0, HISTORY_PAGE_SIZE), false, false);
+                    }
+                    List<ChatMessage> delta = currentServer.getHistory(view.getRoom(), cachedSeq + 1, DELTA_PAGE_SIZE);
+                    if (delta.size() >= DELTA_PAGE_SIZE) {
+                        return new HistoryPage(currentServer.getHistory(view.getRoom(), 0, HISTORY_PAGE_SIZE), true, false);
+                    }
+                    if (delta.isEmpty()) {
+                        // Rien de nouveau, ou un journal repris à zéro qui n'atteint pas encore cachedSeq
+                        List<ChatMessage> latest = currentServer.getHistory(view.getRoom(), 0, HISTORY_PAGE_SIZE);
+                        if (!latest.isEmpty() && latest.get(latest.size() - 1).getSeq() < cachedSeq) {
+                            return new HistoryPage(latest, false, true);
+                        }
+                    }
+                    return new HistoryPage(delta, false, false);
+                } catch (RemoteException e) {
+                    if (RmiCompat.isUnsupportedMethod(e)) return new HistoryPage(List.of(), false, false); // Serveur sans journal
+                    throw e;
                 }
+            }
 
-                // Insérer le timestamp et le message avec leurs styles respectifs
-                doc.insertString(doc.getLength(), "[" + timestamp + "] ", timestampAttrs);
-                doc.insertString(doc.getLength(), message + "\n", messageAttrs);
-                chatArea.setCaretPosition(doc.getLength());
+            @Override
+            protected void done() {
+                try {
+                    HistoryPage page = get();
+                    if (roomViews.get(view.getRoom()) != view) return;
+                    if (page.reset) {
+                        view.forgetRestoredSeq();
+                    }
+                    long after = page.reset ? 0 : cachedSeq;
+                    List<ChatTranscript.Entry> entries = new ArrayList<>();
+                    List<LocalHistoryCache.Cached> cached = new ArrayList<>();
+                    if (page.gap) {
+                        entries.add(createEntry(ChatMessage.systemMessage("⋯ messages plus anciens non affichés", 0)));
+                    }
+                    for (ChatMessage message : page.messages) {
+                        if (message.getSeq() > after && view.precedesLive(message.getSeq())) {
+                            view.markSeen(message.getSeq());
+                            lastSeenSeq = Math.max(lastSeenSeq, message.getSeq());
+                            ChatTranscript.Entry entry = createEntry(message);
+                            entries.add(entry);
+                            cached.add(new LocalHistoryCache.Cached(entry.timestamp, message));
+                        }
+                    }
+                    if (cached.isEmpty()) return;
+                    if (cachedSeq > 0) {
+                        view.appendDelta(entries);
+                    } else {
+                        view.prependHistory(entries);
+                    }
+                    if (historyCache != null) {
+                        historyCache.appendTranscript(cached);
+                    }
+                } catch (Exception e) {
+                    Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+                    cause.printStackTrace();
+                }
+            }
+        }.execute();
+    }
 
-            } catch (BadLocationException e) {
-                e.printStackTrace();
+    // Cache local lu pendant la connexion
+    private static final class LocalHistory {
+        final LocalHistoryCache cache;
+        final List<LocalHistoryCache.Cached> transcript; // Vide si la dernière session est déjà affichée
+        final List<String> inputs;
+
+        LocalHistory(LocalHistoryCache cache, List<LocalHistoryCache.Cached> transcript, List<String> inputs) {
+            this.cache = cache;
+            this.transcript = transcript;
+            this.inputs = inputs;
+        }
+    }
+
+    // Hors EDT: ouvre le cache de ce serveur et de ce nom et relit la dernière session si
+    // restore; null sans cache. Rien n'est affiché tant que la connexion n'a pas réussi.
+    private LocalHistory openLocalHistory(String host, int port, String name, boolean restore) {
+        if (!CACHE_ENABLED) return null;
+        LocalHistoryCache cache;
+        try {
+            cache = LocalHistoryCache.open(host, port, name);
+        } catch (IOException e) {
+            System.err.println("Cache local indisponible: " + e.getMessage());
+            return null;
+        }
+        if (!restore) return new LocalHistory(cache, List.of(), List.of());
+        return new LocalHistory(cache, cache.loadTranscript(LocalHistoryCache.DEFAULT_RESTORED_MESSAGES),
+                cache.loadInputs(inputHistory.capacity()));
+    }
+
+    // Connexion établie: le cache devient celui de la session et la dernière session est
+    // réaffichée, une seule fois par processus, avant les messages déjà reçus en direct
+    private void adoptLocalHistory(LocalHistory history) {
+        if (historyCache != null) {
+            historyCache.close();
+            historyCache = null;
+        }
+        if (history == null) return;
+        historyCache = history.cache;
+        if (historyRestored) return;
+        historyRestored = true;
+        for (String line : history.inputs) {
+            inputHistory.add(line);
+        }
+        Map<String, List<LocalHistoryCache.Cached>> byRoom = new LinkedHashMap<>();
+        for (LocalHistoryCache.Cached entry : history.transcript) {
+            ChatMessage message = entry.getMessage();
+            String room = message.getKind() == MessageKind.PRIVATE ? ChatMessage.DEFAULT_ROOM : message.getRoom();
+            byRoom.computeIfAbsent(room, key -> new ArrayList<>()).add(entry);
+        }
+        for (Map.Entry<String, List<LocalHistoryCache.Cached>> room : byRoom.entrySet()) {
+            RoomView view = roomViews.get(room.getKey());
+            if (view != null) {
+                restoreInto(view, room.getValue());
+            } else {
+                restoredByRoom.put(room.getKey(), room.getValue());
             }
+        }
+    }
+
+    // Les numéros restaurés servent de point de départ à la demande des messages manqués
+    private void restoreInto(RoomView view, List<LocalHistoryCache.Cached> restored) {
+        List<ChatTranscript.Entry> entries = new ArrayList<>(restored.size());
+        for (LocalHistoryCache.Cached cached : restored) {
+            ChatMessage message = cached.getMessage();
+            if (message.getKind() != MessageKind.PRIVATE && view.getRoom().equals(message.getRoom())) {
+                view.markRestored(message.getSeq());
+            }
+            entries.add(createEntry(message, cached.getTimestamp()));
+        }
+        view.appendRestored(entries);
+    }
+
+    private void refreshRoomTitles() {
+        for (RoomView view : roomViews.values()) {
+            int index = roomTabs.indexOfComponent(view.getComponent());
+            if (index >= 0) {
+                roomTabs.setTitleAt(index, view.getTitle());
+            }
+        }
+    }
+
+    private void onRoomSelected() {
+        RoomView view = currentRoomView();
+        view.show();
+        leaveRoomButton.setEnabled(!ChatMessage.DEFAULT_ROOM.equals(view.getRoom()));
+        refreshRoomTitles();
+    }
+
+    // Chat components avec design amélioré
+    private JTextPane createChatArea() {
+        JTextPane chatArea = new JTextPane();
+        chatArea.setEditable(false);
+        chatArea.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 13));
+        chatArea.setBackground(CHAT_BACKGROUND);
+        chatArea.setMargin(new Insets(10, 10, 10, 10));
+        return chatArea;
+    }
+
+    // Liste des salons du client, poussée par le serveur à chaque changement
+    public void updateRooms(List<String> rooms) {
+        SwingUtilities.invokeLater(() -> {
+            for (String room : rooms) {
+                if (!roomViews.containsKey(room)) {
+                    addRoomView(room);
+                }
+            }
+            roomViews.values().removeIf(view -> {
+                if (rooms.contains(view.getRoom()) || ChatMessage.DEFAULT_ROOM.equals(view.getRoom())) {
+                    return false;
+                }
+                roomTabs.remove(view.getComponent());
+                searchIndex.removeRoom(view.getRoom());
+                return true;
+            });
         });
     }
 
+    private void joinRoom() {
+        if (!connected) return;
+        String room = JOptionPane.showInputDialog(this, "Nom du salon à rejoindre:",
+                "➕ Rejoindre un salon", JOptionPane.PLAIN_MESSAGE);
+        if (room == null || room.trim().isEmpty()) return;
+        String name = room.trim().replaceFirst("^#", "");
+        runRoomCommand(() -> server.joinRoom(userName, name), "rejoindre #" + name);
+    }
+
+    private void leaveRoom() {
+        if (!connected) return;
+        String room = currentRoomView().getRoom();
+        if (ChatMessage.DEFAULT_ROOM.equals(room)) return;
+        runRoomCommand(() -> server.leaveRoom(userName, room), "quitter #" + room);
+    }
+
+    private interface RoomCommand {
+        void run() throws Exception;
+    }
+
+    // Appel distant hors de l'EDT; la liste des salons revient ensuite par updateRooms
+    private void runRoomCommand(RoomCommand command, String description) {
+        new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() throws Exception {
+                command.run();
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    get();
+                } catch (Exception e) {
+                    Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+                    updateStatus("⚠ Impossible de " + description + ": " + cause.getMessage());
+                    cause.printStackTrace();
+                }
+            }
+        }.execute();
+    }
+
+    private ChatTranscript.Entry createEntry(ChatMessage message) {
+        return createEntry(message, timestampCache.now());
+    }
+
+    private ChatTranscript.Entry createEntry(ChatMessage message, String timestamp) {
+        Style style = messageStyles.get(classifyMessage(message));
+        return new ChatTranscript.Entry(timestamp, message.toLegacyString(), timestampStyle, style);
+    }
+
+    private MessageStyle classifyMessage(ChatMessage message) {
+        switch (message.getKind()) {
+            case SYSTEM:
+                return MessageStyle.SYSTEM;
+            case PRIVATE:
+                return MessageStyle.PRIVATE;
+            default:
+                return userName != null && userName.equals(message.getSender())
+                        ? MessageStyle.OWN
+                        : MessageStyle.OTHER;
+        }
+    }
+
+    // Styles partagés, enregistrés une seule fois dans le contexte commun à tous les onglets
+    private void registerMessageStyles(StyleContext styles) {
+        // Style pour le timestamp
+        timestampStyle = styles.addStyle("timestamp", null);
+        StyleConstants.setForeground(timestampStyle, TIMESTAMP_COLOR);
+        StyleConstants.setFontSize(timestampStyle, 11);
+        StyleConstants.setItalic(timestampStyle, true);
+
+        // Styles pour les messages
+        Style system = styles.addStyle("system", null);
+        StyleConstants.setForeground(system, SYSTEM_MESSAGE_COLOR);
+        StyleConstants.setItalic(system, true);
+        StyleConstants.setFontSize(system, 12);
+        messageStyles.put(MessageStyle.SYSTEM, system);
+
+        Style privateStyle = styles.addStyle("private", null);
+        StyleConstants.setForeground(privateStyle, PRIVATE_MESSAGE_COLOR);
+        StyleConstants.setBold(privateStyle, true);
+        StyleConstants.setFontSize(privateStyle, 13);
+        messageStyles.put(MessageStyle.PRIVATE, privateStyle);
+
+        Style own = styles.addStyle("own", null);
+        StyleConstants.setForeground(own, OWN_MESSAGE_COLOR);
+        StyleConstants.setBold(own, true);
+        StyleConstants.setFontSize(own, 13);
+        messageStyles.put(MessageStyle.OWN, own);
+
+        Style other = styles.addStyle("other", null);
+        StyleConstants.setForeground(other, USER_MESSAGE_COLOR);
+        StyleConstants.setFontSize(other, 13);
+        messageStyles.put(MessageStyle.OTHER, other);
+    }
+
     public void updateUserList(List<String> users) {
+        syncUserList(users, -1);
+    }
+
+    public void syncUserList(List<String> users, long version) {
         SwingUtilities.invokeLater(() -> {
-            userListModel.clear();
-            for (String user : users) {
-                userListModel.addElement(user);
+            userListModel.replaceAll(users);
+            presenceVersion = version;
+        });
+    }
+
+    public void applyPresenceDelta(List<String> joined, List<String> left, long version) {
+        SwingUtilities.invokeLater(() -> {
+            if (version <= presenceVersion) return; // Déjà inclus dans la dernière liste complète
+            if (presenceVersion < 0 || version != presenceVersion + 1) {
+                // Delta manquant: on redemande une liste complète au serveur
+                presenceVersion = -1;
+                requestUserListSync();
+                return;
+            }
+            for (String user : left) {
+                userListModel.removeUser(user);
             }
+            for (String user : joined) {
+                userListModel.addUser(user);
+            }
+            presenceVersion = version;
         });
     }
 
+    private void requestUserListSync() {
+        ChatServer currentServer = server;
+        String name = userName;
+        if (!connected || currentServer == null) return;
+        Thread syncThread = new Thread(() -> {
+            try {
+                currentServer.requestUserListSync(name);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }, "user-list-sync");
+        syncThread.setDaemon(true);
+        syncThread.start();
+    }
+
     private void updateStatus(String status) {
         statusLabel.setText(status);
     }
@@ -715,7 +1546,13 @@ public class EnhancedChatGUI extends JFrame {
             } catch (Exception e) {
                 e.printStackTrace();
             }
-            new EnhancedChatGUI().setVisible(true);
+            EnhancedChatGUI gui = new EnhancedChatGUI();
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(gui.getMetrics(), new ObjectName("chat:type=Client"));
+            } catch (Exception e) {
+                System.err.println("Statistiques JMX indisponibles: " + e.getMessage());
+            }
+            gui.setVisible(true);
         });
     }
 }
\ No newline at end of file
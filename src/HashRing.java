@@ -0,0 +1,48 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Hachage cohérent: chaque nœud occupe plusieurs points d'un anneau de 2^64 positions, une
+// clé appartient au premier point qui la suit. Ajouter ou retirer un nœud ne déplace que les
+// clés de ses voisins. Immuable: un changement de membres construit un nouvel anneau.
+public final class HashRing {
+
+    public static final int DEFAULT_VIRTUAL_NODES = Integer.getInteger("chat.federation.virtualNodes", 64);
+
+    private final TreeMap<Long, String> points = new TreeMap<>();
+
+    public HashRing(Collection<String> nodes) {
+        this(nodes, DEFAULT_VIRTUAL_NODES);
+    }
+
+    public HashRing(Collection<String> nodes, int virtualNodes) {
+        if (nodes.isEmpty()) throw new IllegalArgumentException("Anneau sans nœud");
+        for (String node : nodes) {
+            for (int i = 0; i < virtualNodes; i++) {
+                points.put(hash(node + "#" + i), node);
+            }
+        }
+    }
+
+    public String ownerOf(String key) {
+        Map.Entry<Long, String> entry = points.ceilingEntry(hash(key));
+        return entry != null ? entry.getValue() : points.firstEntry().getValue();
+    }
+
+    // FNV-1a 64 bits suivi du mélange final de MurmurHash3: stable d'une JVM à l'autre,
+    // contrairement à String.hashCode qui disperse mal les noms proches
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
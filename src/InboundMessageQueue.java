@@ -0,0 +1,55 @@
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+// File sans verrou alimentée par les threads RMI et vidée sur l'EDT au plus une
+// fois par trame (~60 Hz), pour qu'un afflux de messages ne produise pas un
+// Runnable par message dans la file d'événements Swing.
+public class InboundMessageQueue<T> {
+
+    public static final int FRAME_DELAY_MS = 16;
+
+    private final ConcurrentLinkedQueue<T> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean armed = new AtomicBoolean(false);
+    private final Consumer<List<T>> sink;
+    private final Timer drainTimer;
+
+    public InboundMessageQueue(Consumer<List<T>> sink) {
+        this.sink = sink;
+        this.drainTimer = new Timer(FRAME_DELAY_MS, e -> drain());
+        this.drainTimer.setRepeats(false);
+    }
+
+    // Appelable depuis n'importe quel thread
+    public void push(T item) {
+        pending.offer(item);
+        arm();
+    }
+
+    public void pushAll(List<T> items) {
+        pending.addAll(items);
+        arm();
+    }
+
+    private void arm() {
+        if (armed.compareAndSet(false, true)) {
+            drainTimer.restart();
+        }
+    }
+
+    // Sur l'EDT: tout ce qui est en attente part en un seul lot
+    private void drain() {
+        armed.set(false);
+        List<T> batch = new ArrayList<>();
+        T item;
+        while ((item = pending.poll()) != null) {
+            batch.add(item);
+        }
+        if (!batch.isEmpty()) {
+            sink.accept(batch);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+// Lignes envoyées, rappelées avec les flèches du champ de saisie: tampon circulaire de
+// taille fixe, l'ajout écrase la plus ancienne sans décaler les autres. S'exécute sur l'EDT.
+public class InputHistory {
+
+    public static final int DEFAULT_CAPACITY = Integer.getInteger("chat.inputHistory.size", 50);
+
+    private final String[] ring;
+    private int head = 0; // Index de la plus ancienne
+    private int size = 0;
+    private int cursor = -1; // Rang depuis la plus récente pendant la navigation (-1 = hors navigation)
+
+    public InputHistory() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public InputHistory(int capacity) {
+        this.ring = new String[Math.max(1, capacity)];
+    }
+
+    // Ajoute une ligne et termine la navigation en cours
+    public void add(String line) {
+        if (size == ring.length) {
+            ring[head] = line;
+            head = (head + 1) % ring.length;
+        } else {
+            ring[(head + size) % ring.length] = line;
+            size++;
+        }
+        cursor = -1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return ring.length;
+    }
+
+    // 0 = la plus récente
+    public String get(int fromNewest) {
+        if (fromNewest < 0 || fromNewest >= size) throw new IndexOutOfBoundsException(fromNewest);
+        return ring[(head + size - 1 - fromNewest) % ring.length];
+    }
+
+    // Ligne plus ancienne que celle affichée; reste sur la plus ancienne une fois au bout
+    public String previous() {
+        if (size == 0) return null;
+        cursor = Math.min(cursor + 1, size - 1);
+        return get(cursor);
+    }
+
+    // Ligne plus récente, ou null en revenant au champ vide
+    public String next() {
+        if (cursor <= 0) {
+            cursor = -1;
+            return null;
+        }
+        cursor--;
+        return get(cursor);
+    }
+}
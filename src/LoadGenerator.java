@@ -0,0 +1,263 @@
+import java.nio.file.Files;
+import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Générateur de charge sans interface: enregistre N ChatClient synthétiques auprès du serveur
+// du registre RMI local, envoie des messages publics et privés à débit fixe (boucle ouverte)
+// et mesure la latence de bout en bout grâce à l'heure d'envoi placée dans le texte.
+// Émetteurs et destinataires sont dans ce processus: System.nanoTime suffit à les comparer.
+//
+// java -Dchat.load.clients=2000 -Dchat.load.publicRate=20 LoadGenerator [port]
+// -Dchat.load.embedded=true démarre le serveur de référence dans ce processus.
+public class LoadGenerator {
+
+    private static final int CLIENTS = Integer.getInteger("chat.load.clients", 1000);
+    // Messages par seconde, tous clients confondus
+    private static final double PUBLIC_RATE = Double.parseDouble(System.getProperty("chat.load.publicRate", "20"));
+    private static final double PRIVATE_RATE = Double.parseDouble(System.getProperty("chat.load.privateRate", "50"));
+    private static final int MESSAGE_BYTES = Integer.getInteger("chat.load.messageBytes", 64);
+    private static final long WARMUP_SEC = Long.getLong("chat.load.warmupSec", 5);
+    private static final long DURATION_SEC = Long.getLong("chat.load.durationSec", 30);
+    private static final long REPORT_SEC = Long.getLong("chat.load.reportSec", 5);
+    // Au-delà, le serveur ne suit plus: les envois prévus sont comptés comme abandonnés
+    private static final int MAX_IN_FLIGHT = Integer.getInteger("chat.load.maxInFlight", 10_000);
+    private static final long TICK_MS = 10;
+    private static final long DRAIN_MS = 2000;
+
+    private static final String STAMP_PREFIX = "load:";
+
+    private final ChatServer server;
+    private final List<LoadClient> clients = new ArrayList<>();
+    private final LatencyHistogram publicLatency = new LatencyHistogram();
+    private final LatencyHistogram privateLatency = new LatencyHistogram();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong sendErrors = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong inFlight = new AtomicLong();
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+    private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "load-ticker");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final String padding;
+
+    // Client synthétique: ne garde rien, mesure seulement les messages horodatés
+    private final class LoadClient implements ChatClient {
+        private final String name;
+
+        LoadClient(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void receiveMessage(String message) {
+            // Format texte d'un ancien serveur: pas de mesure
+        }
+
+        @Override
+        public void receiveChatMessages(List<ChatMessage> messages) {
+            long now = System.nanoTime();
+            for (ChatMessage message : messages) {
+                long stamp = parseStamp(message.getBody());
+                if (stamp < 0) continue;
+                if (message.getKind() == MessageKind.PRIVATE) {
+                    // L'expéditeur reçoit aussi une copie: seul le destinataire compte
+                    if (name.equals(message.getRecipient())) {
+                        privateLatency.record((now - stamp) / 1000);
+                    }
+                } else {
+                    publicLatency.record((now - stamp) / 1000);
+                }
+            }
+        }
+
+        @Override
+        public void updateUserList(List<String> users) {
+        }
+
+        @Override
+        public void updatePresence(List<String> joined, List<String> left, long version) {
+        }
+    }
+
+    public LoadGenerator(ChatServer server) {
+        this.server = server;
+        this.padding = " " + "x".repeat(Math.max(0, MESSAGE_BYTES - 24));
+    }
+
+    public void run() throws Exception {
+        register();
+        long start = System.nanoTime();
+        ticker.scheduleAtFixedRate(new Pacer(PUBLIC_RATE, start, false), 0, TICK_MS, TimeUnit.MILLISECONDS);
+        ticker.scheduleAtFixedRate(new Pacer(PRIVATE_RATE, start, true), 0, TICK_MS, TimeUnit.MILLISECONDS);
+
+        System.out.println("Préchauffage pendant " + WARMUP_SEC + " s...");
+        Thread.sleep(TimeUnit.SECONDS.toMillis(WARMUP_SEC));
+        resetStats();
+
+        long measureStart = System.nanoTime();
+        for (long elapsed = 0; elapsed < DURATION_SEC; elapsed += REPORT_SEC) {
+            Thread.sleep(TimeUnit.SECONDS.toMillis(Math.min(REPORT_SEC, DURATION_SEC - elapsed)));
+            report(System.nanoTime() - measureStart);
+        }
+
+        ticker.shutdownNow();
+        long measured = System.nanoTime() - measureStart;
+        Thread.sleep(DRAIN_MS); // Derniers messages encore en route, comptés sur la durée mesurée
+        System.out.println("=== Résultat ===");
+        report(measured);
+        unregister();
+    }
+
+    private void register() throws RemoteException {
+        System.out.println("Enregistrement de " + CLIENTS + " clients...");
+        for (int i = 0; i < CLIENTS; i++) {
+            LoadClient client = new LoadClient("load-" + i);
+            UnicastRemoteObject.exportObject(client, 0);
+            server.registerClient(client.name, client);
+            clients.add(client);
+        }
+    }
+
+    private void unregister() {
+        for (LoadClient client : clients) {
+            senders.execute(() -> {
+                try {
+                    server.unregisterClient(client.name);
+                    UnicastRemoteObject.unexportObject(client, true);
+                } catch (RemoteException e) {
+                    // Le serveur retire de toute façon les clients injoignables
+                }
+            });
+        }
+        senders.shutdown();
+        try {
+            senders.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Envoie à chaque tick ce que le débit demande depuis le départ, sans attendre les
+    // réponses: un serveur lent n'abaisse pas le débit, il allonge les latences mesurées
+    private final class Pacer implements Runnable {
+        private final double rate;
+        private final long start;
+        private final boolean privateMessages;
+        private long issued = 0;
+
+        Pacer(double rate, long start, boolean privateMessages) {
+            this.rate = rate;
+            this.start = start;
+            this.privateMessages = privateMessages;
+        }
+
+        @Override
+        public void run() {
+            long due = (long) (rate * (System.nanoTime() - start) / 1_000_000_000.0) - issued;
+            for (long i = 0; i < due; i++) {
+                issued++;
+                if (inFlight.get() >= MAX_IN_FLIGHT) {
+                    skipped.incrementAndGet();
+                    continue;
+                }
+                inFlight.incrementAndGet();
+                senders.execute(privateMessages ? this::sendPrivate : this::sendPublic);
+            }
+        }
+
+        private void sendPublic() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            String from = clients.get(random.nextInt(clients.size())).name;
+            try {
+                server.sendMessage(from, stampedBody(), 0);
+                sent.incrementAndGet();
+            } catch (RemoteException e) {
+                sendErrors.incrementAndGet();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+
+        private void sendPrivate() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int fromIndex = random.nextInt(clients.size());
+            int toIndex = clients.size() > 1
+                    ? (fromIndex + 1 + random.nextInt(clients.size() - 1)) % clients.size()
+                    : fromIndex;
+            try {
+                server.sendPrivateMessage(clients.get(fromIndex).name, clients.get(toIndex).name, stampedBody());
+                sent.incrementAndGet();
+            } catch (RemoteException e) {
+                sendErrors.incrementAndGet();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+
+    private String stampedBody() {
+        return STAMP_PREFIX + System.nanoTime() + padding;
+    }
+
+    // Heure d'envoi en ns, ou -1 pour un message sans horodatage (annonces du serveur)
+    static long parseStamp(String body) {
+        if (body == null || !body.startsWith(STAMP_PREFIX)) return -1;
+        int end = body.indexOf(' ', STAMP_PREFIX.length());
+        try {
+            return Long.parseLong(body.substring(STAMP_PREFIX.length(), end < 0 ? body.length() : end));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void resetStats() {
+        publicLatency.reset();
+        privateLatency.reset();
+        sent.set(0);
+        sendErrors.set(0);
+        skipped.set(0);
+    }
+
+    private void report(long elapsedNanos) {
+        double seconds = Math.max(1e-9, elapsedNanos / 1_000_000_000.0);
+        System.out.printf("[%5.1f s] envoyés=%d (%.0f/s) erreurs=%d abandonnés=%d en vol=%d%n",
+                seconds, sent.get(), sent.get() / seconds, sendErrors.get(), skipped.get(), inFlight.get());
+        System.out.println("  public: " + publicLatency.summary()
+                + String.format(" (%.0f livraisons/s)", publicLatency.getCount() / seconds));
+        System.out.println("  privé:  " + privateLatency.summary());
+    }
+
+    public static void main(String[] args) {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 1099;
+        try {
+            if (Boolean.getBoolean("chat.load.embedded")) {
+                // Serveur de référence dans ce processus; les appels passent quand même par RMI
+                MessageLog log = MessageLog.open(Files.createTempDirectory("chat-load-log"));
+                ChatServerImpl embedded = new ChatServerImpl(Executors.newVirtualThreadPerTaskExecutor(), log);
+                embedded.start();
+                Registry registry = LocateRegistry.createRegistry(port);
+                registry.rebind("ChatServer", embedded);
+                System.out.println("Serveur de référence démarré sur le port " + port);
+            }
+            Registry registry = LocateRegistry.getRegistry("localhost", port);
+            ChatServer server = (ChatServer) registry.lookup("ChatServer");
+            new LoadGenerator(server).run();
+        } catch (Exception e) {
+            System.err.println("Échec du générateur de charge: " + e.getMessage());
+            e.printStackTrace();
+        }
+        System.exit(0);
+    }
+}
@@ -0,0 +1,146 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Copie locale de la discussion et des lignes envoyées, par serveur et par utilisateur, dans
+// deux MappedRing sous chat.cache.dir. À la connexion suivante les derniers messages sont
+// affichés depuis le disque avant toute réponse du serveur, qui n'envoie plus que ce qui
+// manque (getHistory à partir du dernier numéro connu). Les écritures passent par un thread
+// dédié: l'EDT ne fait que les confier.
+public class LocalHistoryCache implements AutoCloseable {
+
+    public static final int DEFAULT_RESTORED_MESSAGES = Integer.getInteger("chat.cache.restoreMessages", 500);
+    private static final int TRANSCRIPT_BYTES = Integer.getInteger("chat.cache.transcriptBytes", 8 * 1024 * 1024);
+    private static final long CLOSE_TIMEOUT_MS = 1000;
+    private static final int INPUT_BYTES = Integer.getInteger("chat.cache.inputBytes", 64 * 1024);
+
+    // Message affiché et heure de sa réception, réaffichée telle quelle
+    public static final class Cached {
+        final String timestamp;
+        final ChatMessage message;
+
+        public Cached(String timestamp, ChatMessage message) {
+            this.timestamp = timestamp;
+            this.message = message;
+        }
+
+        public String getTimestamp() {
+            return timestamp;
+        }
+
+        public ChatMessage getMessage() {
+            return message;
+        }
+    }
+
+    private final MappedRing transcript;
+    private final MappedRing inputs;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "chat-history-cache");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private LocalHistoryCache(MappedRing transcript, MappedRing inputs) {
+        this.transcript = transcript;
+        this.inputs = inputs;
+    }
+
+    public static LocalHistoryCache open(String host, int port, String user) throws IOException {
+        Path directory = Paths.get(System.getProperty("chat.cache.dir",
+                Paths.get(System.getProperty("user.home"), ".chat-cache").toString()));
+        String key = sanitize(host) + "_" + port + "_" + sanitize(user);
+        MappedRing transcript = MappedRing.open(directory.resolve(key + ".transcript"), TRANSCRIPT_BYTES);
+        try {
+            return new LocalHistoryCache(transcript, MappedRing.open(directory.resolve(key + ".input"), INPUT_BYTES));
+        } catch (IOException e) {
+            transcript.close();
+            throw e;
+        }
+    }
+
+    // Nom de fichier sûr quel que soit le nom saisi
+    private static String sanitize(String value) {
+        StringBuilder safe = new StringBuilder(value.length());
+        for (char c : value.toCharArray()) {
+            safe.append(Character.isLetterOrDigit(c) || c == '-' || c == '.' ? c : '_');
+        }
+        return safe.toString();
+    }
+
+    // Du plus ancien au plus récent; un enregistrement illisible est ignoré
+    public List<Cached> loadTranscript(int limit) {
+        List<Cached> messages = new ArrayList<>();
+        for (byte[] record : transcript.readLast(limit)) {
+            try {
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+                String timestamp = in.readUTF();
+                messages.add(new Cached(timestamp, ChatMessage.readFrom(in)));
+            } catch (IOException e) {
+                // Format d'une autre version: le message n'est pas réaffiché
+            }
+        }
+        return messages;
+    }
+
+    public List<String> loadInputs(int limit) {
+        List<String> lines = new ArrayList<>();
+        for (byte[] record : inputs.readLast(limit)) {
+            lines.add(new String(record, StandardCharsets.UTF_8));
+        }
+        return lines;
+    }
+
+    public void appendTranscript(List<Cached> messages) {
+        if (messages.isEmpty()) return;
+        List<Cached> batch = new ArrayList<>(messages);
+        writer.execute(() -> {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+            DataOutputStream out = new DataOutputStream(buffer);
+            for (Cached cached : batch) {
+                buffer.reset();
+                try {
+                    out.writeUTF(cached.timestamp);
+                    cached.message.writeTo(out);
+                } catch (IOException e) {
+                    continue; // Impossible en mémoire
+                }
+                transcript.append(buffer.toByteArray());
+            }
+        });
+    }
+
+    public void appendInput(String line) {
+        writer.execute(() -> inputs.append(line.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    // Les écritures en attente sont terminées avant la fermeture
+    @Override
+    public void close() {
+        writer.execute(() -> {
+            try {
+                transcript.close();
+                inputs.close();
+            } catch (IOException e) {
+                System.err.println("Fermeture du cache local impossible: " + e.getMessage());
+            }
+        });
+        writer.shutdown();
+        try {
+            // Borné: appelé sur l'EDT, souvent juste avant l'arrêt de la JVM
+            writer.awaitTermination(CLOSE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
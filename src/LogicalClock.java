@@ -0,0 +1,124 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Horloge logique sans verrou: tick() à l'envoi, merge() à la réception (max + 1 par CAS).
+// Deux modes, choisis avec -Dchat.clock=lamport|hlc:
+//  - lamport: compteur de Lamport classique
+//  - hlc: horloge logique hybride, 48 bits de millisecondes + 16 bits de compteur,
+//    qui reste proche du temps réel pour ordonner plusieurs serveurs
+public abstract class LogicalClock {
+
+    public enum Mode { LAMPORT, HLC }
+
+    protected final AtomicLong time = new AtomicLong(0);
+    private final LongAdder ticks = new LongAdder();
+    private final LongAdder merges = new LongAdder();
+    private final LongAdder remoteAheadMerges = new LongAdder();
+    private final LongAdder casRetries = new LongAdder();
+
+    public static LogicalClock create() {
+        String mode = System.getProperty("chat.clock", "lamport");
+        return create("hlc".equalsIgnoreCase(mode) ? Mode.HLC : Mode.LAMPORT);
+    }
+
+    public static LogicalClock create(Mode mode) {
+        return mode == Mode.HLC ? new Hybrid() : new Lamport();
+    }
+
+    public abstract Mode getMode();
+
+    // Valeur candidate après un événement local, à partir de la valeur courante
+    protected abstract long next(long current);
+
+    // Valeur candidate après réception d'une valeur distante
+    protected abstract long next(long current, long received);
+
+    public long tick() {
+        ticks.increment();
+        while (true) {
+            long current = time.get();
+            long updated = next(current);
+            if (time.compareAndSet(current, updated)) {
+                return updated;
+            }
+            casRetries.increment();
+        }
+    }
+
+    public long merge(long received) {
+        merges.increment();
+        while (true) {
+            long current = time.get();
+            long updated = next(current, received);
+            if (time.compareAndSet(current, updated)) {
+                if (received >= current) {
+                    remoteAheadMerges.increment();
+                }
+                return updated;
+            }
+            casRetries.increment();
+        }
+    }
+
+    public long current() {
+        return time.get();
+    }
+
+    public long getTickCount() {
+        return ticks.sum();
+    }
+
+    public long getMergeCount() {
+        return merges.sum();
+    }
+
+    // Fusions où l'horloge distante était en avance (l'horloge locale a dû sauter)
+    public long getRemoteAheadMergeCount() {
+        return remoteAheadMerges.sum();
+    }
+
+    public long getCasRetryCount() {
+        return casRetries.sum();
+    }
+
+    private static final class Lamport extends LogicalClock {
+        @Override
+        public Mode getMode() {
+            return Mode.LAMPORT;
+        }
+
+        @Override
+        protected long next(long current) {
+            return current + 1;
+        }
+
+        @Override
+        protected long next(long current, long received) {
+            return Math.max(current, received) + 1;
+        }
+    }
+
+    private static final class Hybrid extends LogicalClock {
+        private static final int LOGICAL_BITS = 16;
+
+        @Override
+        public Mode getMode() {
+            return Mode.HLC;
+        }
+
+        private static long physicalNow() {
+            return System.currentTimeMillis() << LOGICAL_BITS;
+        }
+
+        // Le compteur logique déborde sur la partie physique, ce qui garde l'ordre
+        @Override
+        protected long next(long current) {
+            return Math.max(physicalNow(), current + 1);
+        }
+
+        @Override
+        protected long next(long current, long received) {
+            return Math.max(physicalNow(), Math.max(current, received) + 1);
+        }
+    }
+}
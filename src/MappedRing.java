@@ -0,0 +1,174 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+// Fichier circulaire de taille fixe, projeté en mémoire: ajouter un enregistrement est une
+// copie dans la projection, sans appel système, et les plus anciens sont écrasés quand la
+// place manque. En-tête: magie, version, début, fin, nombre d'enregistrements; chaque
+// enregistrement est [longueur][octets]. Une longueur 0 (ou moins de 4 octets restants)
+// renvoie au début de la zone. L'en-tête n'est mis à jour qu'après l'écriture des données;
+// un en-tête incohérent à l'ouverture (arrêt brutal) vide l'anneau.
+public class MappedRing implements AutoCloseable {
+
+    private static final int MAGIC = 0x43485247; // "CHRG"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final int HEAD_OFFSET = 8;
+    private static final int TAIL_OFFSET = 16;
+    private static final int COUNT_OFFSET = 24;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer map;
+    private final int capacity; // Taille de la zone de données
+    private int head;
+    private int tail;
+    private int count;
+
+    private MappedRing(FileChannel channel, MappedByteBuffer map) {
+        this.channel = channel;
+        this.map = map;
+        this.capacity = map.capacity() - HEADER_BYTES;
+    }
+
+    // Un fichier d'une autre taille ou d'un autre format est remis à zéro
+    public static MappedRing open(Path path, int fileBytes) throws IOException {
+        if (fileBytes <= HEADER_BYTES + 8) throw new IllegalArgumentException("Anneau trop petit: " + fileBytes);
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            boolean resized = channel.size() != fileBytes;
+            if (resized) {
+                channel.truncate(0);
+            }
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileBytes);
+            MappedRing ring = new MappedRing(channel, map);
+            if (resized || !ring.readHeader()) {
+                ring.reset();
+            }
+            return ring;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private boolean readHeader() {
+        if (map.getInt(0) != MAGIC || map.getInt(4) != VERSION) return false;
+        long storedHead = map.getLong(HEAD_OFFSET);
+        long storedTail = map.getLong(TAIL_OFFSET);
+        long storedCount = map.getLong(COUNT_OFFSET);
+        if (storedHead < 0 || storedHead > capacity || storedTail < 0 || storedTail > capacity
+                || storedCount < 0 || storedCount > capacity / 4) {
+            return false;
+        }
+        head = (int) storedHead;
+        tail = (int) storedTail;
+        count = (int) storedCount;
+        // Parcours de contrôle: les count enregistrements doivent mener de head à tail
+        int position = head;
+        for (int i = 0; i < count; i++) {
+            position = normalize(position);
+            int length = map.getInt(HEADER_BYTES + position);
+            if (length <= 0 || length > capacity - position - 4) return false;
+            position += 4 + length;
+        }
+        return count == 0 || position == tail;
+    }
+
+    private void reset() {
+        head = 0;
+        tail = 0;
+        count = 0;
+        map.putInt(0, MAGIC);
+        map.putInt(4, VERSION);
+        writeHeader();
+    }
+
+    private void writeHeader() {
+        map.putLong(HEAD_OFFSET, head);
+        map.putLong(TAIL_OFFSET, tail);
+        map.putLong(COUNT_OFFSET, count);
+    }
+
+    // Position d'un enregistrement, après un éventuel renvoi au début
+    private int normalize(int position) {
+        if (capacity - position < 4 || map.getInt(HEADER_BYTES + position) == 0) return 0;
+        return position;
+    }
+
+    // Un enregistrement plus grand que l'anneau est ignoré
+    public synchronized boolean append(byte[] record) {
+        int needed = 4 + record.length;
+        if (record.length == 0 || needed > capacity) return false;
+        int position = tail;
+        if (capacity - position < needed) {
+            // Ce qui reste jusqu'au bout de la zone est perdu avec le renvoi au début
+            while (count > 0 && head >= position) {
+                evictOldest();
+            }
+            if (capacity - position >= 4) {
+                map.putInt(HEADER_BYTES + position, 0);
+            }
+            position = 0;
+        }
+        // Les plus anciens cèdent la place: ceux qui commencent dans [position, position + needed)
+        while (count > 0 && head >= position && head - position < needed) {
+            evictOldest();
+        }
+        map.put(HEADER_BYTES + position + 4, record);
+        map.putInt(HEADER_BYTES + position, record.length);
+        tail = position + needed;
+        count++;
+        writeHeader();
+        return true;
+    }
+
+    private void evictOldest() {
+        head = normalize(head);
+        head += 4 + map.getInt(HEADER_BYTES + head);
+        count--;
+        if (count == 0) {
+            head = tail;
+        } else {
+            head = normalize(head);
+        }
+    }
+
+    // Les limit derniers enregistrements, du plus ancien au plus récent
+    public synchronized List<byte[]> readLast(int limit) {
+        List<byte[]> records = new ArrayList<>(Math.min(count, limit));
+        int position = head;
+        for (int i = 0; i < count; i++) {
+            position = normalize(position);
+            int length = map.getInt(HEADER_BYTES + position);
+            if (i >= count - limit) {
+                byte[] record = new byte[length];
+                map.get(HEADER_BYTES + position + 4, record);
+                records.add(record);
+            }
+            position += 4 + length;
+        }
+        return records;
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    public synchronized void force() {
+        map.force();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        map.force();
+        channel.close();
+    }
+}
@@ -0,0 +1,48 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Boîte hors ligne en mémoire, perdue à l'arrêt: pour un serveur sans répertoire de données
+public class MemoryMailbox implements OfflineMailbox {
+
+    private final ConcurrentHashMap<String, ArrayDeque<ChatMessage>> boxes = new ConcurrentHashMap<>();
+    private final Set<String> knownUsers = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public void markKnown(String user) {
+        knownUsers.add(user);
+    }
+
+    @Override
+    public boolean isKnown(String user) {
+        return knownUsers.contains(user);
+    }
+
+    @Override
+    public void store(String user, ChatMessage message) {
+        boxes.compute(user, (key, box) -> {
+            ArrayDeque<ChatMessage> target = box != null ? box : new ArrayDeque<>();
+            target.addLast(message);
+            if (target.size() > MAX_PER_USER) {
+                target.pollFirst();
+            }
+            return target;
+        });
+    }
+
+    @Override
+    public List<ChatMessage> drain(String user) {
+        ArrayDeque<ChatMessage> box = boxes.remove(user);
+        return box != null ? new ArrayList<>(box) : List.of();
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,18 @@
+import java.io.StreamCorruptedException;
+
+// Nature d'un ChatMessage, transmise sur un octet
+public enum MessageKind {
+    SYSTEM,
+    PUBLIC,
+    PRIVATE;
+
+    private static final MessageKind[] VALUES = values();
+
+    // L'octet vient d'une trame, d'un shard ou du cache local: hors plage, il est corrompu
+    public static MessageKind fromCode(int code) throws StreamCorruptedException {
+        if (code < 0 || code >= VALUES.length) {
+            throw new StreamCorruptedException("Nature de message invalide: " + code);
+        }
+        return VALUES[code];
+    }
+}
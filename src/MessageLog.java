@@ -0,0 +1,337 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+// Journal des messages du serveur, en ajout seul. Les messages sont écrits dans des
+// segments de taille fixe projetés en mémoire (un fichier par segment, nommé d'après
+// son premier numéro); chaque enregistrement est [longueur][crc32][ChatMessage.writeTo].
+// Un index en mémoire donne la position de chaque numéro dans son segment et, par salon
+// (ou par participant d'une conversation privée), la liste de ses numéros: une page
+// d'historique se lit directement dans la projection.
+// Un seul écrivain (append, sous verrou), lecteurs concurrents sans verrou.
+public class MessageLog implements AutoCloseable {
+
+    public static final int DEFAULT_SEGMENT_BYTES = Integer.getInteger("chat.log.segmentBytes", 64 * 1024 * 1024);
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final int HEADER_BYTES = 8;
+
+    // Segment projeté: positions des enregistrements, indexées par (numéro - baseSeq)
+    private static final class Segment {
+        final long baseSeq;
+        final Path path;
+        final MappedByteBuffer buffer;
+        private volatile int[] offsets = new int[1024];
+        private volatile int count = 0;
+        int writePosition = 0; // Modifié par l'écrivain seulement
+
+        Segment(long baseSeq, Path path, MappedByteBuffer buffer) {
+            this.baseSeq = baseSeq;
+            this.path = path;
+            this.buffer = buffer;
+        }
+
+        // Écrivain: le tableau est publié avant le compteur qui le rend lisible
+        void addOffset(int offset) {
+            int[] current = offsets;
+            if (count == current.length) {
+                current = Arrays.copyOf(current, current.length * 2);
+                offsets = current;
+            }
+            current[count] = offset;
+            count = count + 1;
+        }
+
+        int size() {
+            return count;
+        }
+
+        int offsetOf(long seq) {
+            int index = (int) (seq - baseSeq);
+            return index >= 0 && index < count ? offsets[index] : -1;
+        }
+    }
+
+    // Numéros d'un salon ou d'un participant, croissants
+    private static final class RoomIndex {
+        private long[] seqs = new long[256];
+        private int size = 0;
+
+        synchronized void add(long seq) {
+            if (size == seqs.length) {
+                seqs = Arrays.copyOf(seqs, size * 2);
+            }
+            seqs[size++] = seq;
+        }
+
+        // Au plus limit numéros à partir de fromSeq, ou les limit derniers si fromSeq <= 0
+        synchronized long[] page(long fromSeq, int limit) {
+            int start;
+            if (fromSeq <= 0) {
+                start = Math.max(0, size - limit);
+            } else {
+                start = Arrays.binarySearch(seqs, 0, size, fromSeq);
+                if (start < 0) start = -start - 1;
+            }
+            int end = Math.min(size, start + limit);
+            return Arrays.copyOfRange(seqs, start, Math.max(start, end));
+        }
+    }
+
+    private final Path directory;
+    private final int segmentBytes;
+    private volatile Segment[] segments = new Segment[0];
+    private final ConcurrentHashMap<String, RoomIndex> roomIndexes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, RoomIndex> privateIndexes = new ConcurrentHashMap<>();
+    private final Object writeLock = new Object();
+    private final ByteArrayOutputStream encodeBuffer = new ByteArrayOutputStream(256);
+    private final DataOutputStream encoder = new DataOutputStream(encodeBuffer);
+    private final CRC32 crc = new CRC32();
+    private long nextSeq = 1;
+
+    private MessageLog(Path directory, int segmentBytes) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+    }
+
+    public static MessageLog open(Path directory) throws IOException {
+        return open(directory, DEFAULT_SEGMENT_BYTES);
+    }
+
+    // Relit les segments existants; la lecture d'un segment s'arrête au premier enregistrement
+    // incomplet ou corrompu (arrêt brutal pendant une écriture), qui sera écrasé
+    public static MessageLog open(Path directory, int segmentBytes) throws IOException {
+        Files.createDirectories(directory);
+        MessageLog log = new MessageLog(directory, segmentBytes);
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        Collections.sort(files);
+        List<Segment> loaded = new ArrayList<>(files.size());
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            long baseSeq = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+            Segment segment = new Segment(baseSeq, file, map(file, Math.max(segmentBytes, (int) Files.size(file))));
+            log.recover(segment);
+            if (segment.size() == 0 && !loaded.isEmpty()) {
+                continue; // Segment vide: il sera recréé au prochain ajout
+            }
+            loaded.add(segment);
+            log.nextSeq = segment.baseSeq + segment.size();
+        }
+        log.segments = loaded.toArray(new Segment[0]);
+        return log;
+    }
+
+    private static MappedByteBuffer map(Path file, int size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // La projection reste valide après la fermeture du canal
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    private void recover(Segment segment) throws IOException {
+        ByteBuffer buffer = segment.buffer;
+        int position = 0;
+        while (position + HEADER_BYTES <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + HEADER_BYTES + length > buffer.capacity()) break;
+            CRC32 check = new CRC32();
+            check.update(buffer.slice(position + HEADER_BYTES, length));
+            if ((int) check.getValue() != buffer.getInt(position + 4)) break;
+            ChatMessage message = decode(buffer, position, length);
+            if (message.getSeq() != segment.baseSeq + segment.size()) break;
+            segment.addOffset(position);
+            indexRoom(message);
+            position += HEADER_BYTES + length;
+        }
+        segment.writePosition = position;
+        // Effacer un éventuel en-tête partiel pour qu'il ne soit pas relu après le prochain ajout
+        if (position + HEADER_BYTES <= buffer.capacity()) {
+            buffer.putLong(position, 0L);
+        }
+    }
+
+    // Attribue le numéro suivant, écrit le message et renvoie la copie numérotée
+    public ChatMessage append(ChatMessage message) throws IOException {
+        synchronized (writeLock) {
+            ChatMessage numbered = message.withSeq(nextSeq);
+            encodeBuffer.reset();
+            numbered.writeTo(encoder);
+            int length = encodeBuffer.size();
+            if (HEADER_BYTES + length > segmentBytes) {
+                throw new IOException("Message trop grand pour un segment du journal (" + length + " octets)");
+            }
+
+            Segment segment = activeSegment();
+            if (segment == null || segment.writePosition + HEADER_BYTES + length > segment.buffer.capacity()) {
+                segment = roll();
+            }
+            byte[] bytes = encodeBuffer.toByteArray();
+            crc.reset();
+            crc.update(bytes);
+            int position = segment.writePosition;
+            segment.buffer.put(position + HEADER_BYTES, bytes);
+            segment.buffer.putInt(position + 4, (int) crc.getValue());
+            // La longueur en dernier: un enregistrement n'est relu que s'il est complet
+            segment.buffer.putInt(position, length);
+            segment.writePosition = position + HEADER_BYTES + length;
+            segment.addOffset(position);
+            nextSeq++;
+            indexRoom(numbered);
+            return numbered;
+        }
+    }
+
+    private Segment activeSegment() {
+        Segment[] current = segments;
+        return current.length == 0 ? null : current[current.length - 1];
+    }
+
+    private Segment roll() throws IOException {
+        Segment previous = activeSegment();
+        if (previous != null) {
+            previous.buffer.force();
+        }
+        Path file = directory.resolve(String.format("%020d%s", nextSeq, SEGMENT_SUFFIX));
+        Segment segment = new Segment(nextSeq, file, map(file, segmentBytes));
+        Segment[] current = segments;
+        Segment[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = segment;
+        segments = updated;
+        return segment;
+    }
+
+    private void indexRoom(ChatMessage message) {
+        // Les messages privés n'appartiennent à aucun salon: indexés par émetteur et destinataire
+        if (message.getKind() == MessageKind.PRIVATE) {
+            if (message.getSender() != null) {
+                privateIndexes.computeIfAbsent(message.getSender(), user -> new RoomIndex()).add(message.getSeq());
+            }
+            if (message.getRecipient() != null && !message.getRecipient().equals(message.getSender())) {
+                privateIndexes.computeIfAbsent(message.getRecipient(), user -> new RoomIndex()).add(message.getSeq());
+            }
+            return;
+        }
+        roomIndexes.computeIfAbsent(message.getRoom(), room -> new RoomIndex()).add(message.getSeq());
+    }
+
+    // Page d'historique d'un salon, du plus ancien au plus récent
+    public List<ChatMessage> getHistory(String room, long fromSeq, int limit) throws IOException {
+        return readPage(roomIndexes.get(room), fromSeq, limit);
+    }
+
+    // Messages privés envoyés ou reçus par user, même pagination que getHistory
+    public List<ChatMessage> getPrivateHistory(String user, long fromSeq, int limit) throws IOException {
+        return readPage(privateIndexes.get(user), fromSeq, limit);
+    }
+
+    private List<ChatMessage> readPage(RoomIndex index, long fromSeq, int limit) throws IOException {
+        if (index == null || limit <= 0) return Collections.emptyList();
+        long[] seqs = index.page(fromSeq, limit);
+        List<ChatMessage> page = new ArrayList<>(seqs.length);
+        for (long seq : seqs) {
+            ChatMessage message = read(seq);
+            if (message != null) {
+                page.add(message);
+            }
+        }
+        return page;
+    }
+
+    public ChatMessage read(long seq) throws IOException {
+        Segment segment = segmentFor(seq);
+        if (segment == null) return null;
+        int offset = segment.offsetOf(seq);
+        if (offset < 0) return null;
+        return decode(segment.buffer, offset, segment.buffer.getInt(offset));
+    }
+
+    private Segment segmentFor(long seq) {
+        Segment[] current = segments;
+        int low = 0;
+        int high = current.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (current[mid].baseSeq <= seq) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high >= 0 ? current[high] : null;
+    }
+
+    // Décodage depuis une vue de la projection, sans copie intermédiaire du contenu
+    private static ChatMessage decode(ByteBuffer buffer, int offset, int length) throws IOException {
+        ByteBuffer record = buffer.slice(offset + HEADER_BYTES, length);
+        return ChatMessage.readFrom(new DataInputStream(new BufferInputStream(record)));
+    }
+
+    // Numéro du dernier message journalisé (0 si le journal est vide)
+    public long getLastSeq() {
+        synchronized (writeLock) {
+            return nextSeq - 1;
+        }
+    }
+
+    public int getSegmentCount() {
+        return segments.length;
+    }
+
+    // Les écritures sont dans le cache de pages dès append; force les pousse sur disque
+    public void flush() {
+        Segment segment = activeSegment();
+        if (segment != null) {
+            segment.buffer.force();
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (writeLock) {
+            for (Segment segment : segments) {
+                segment.buffer.force();
+            }
+        }
+    }
+
+    private static final class BufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        BufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) return -1;
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+    }
+}
@@ -0,0 +1,7 @@
+// Classe d'affichage d'un message, résolue une seule fois vers un Style partagé du document
+public enum MessageStyle {
+    SYSTEM,
+    PRIVATE,
+    OWN,
+    OTHER
+}
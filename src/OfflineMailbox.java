@@ -0,0 +1,24 @@
+import java.io.IOException;
+import java.util.List;
+
+// Messages privés en attente pour les utilisateurs déconnectés, remis en bloc à la connexion,
+// et noms déjà enregistrés (un destinataire inconnu est refusé plutôt que mis en attente).
+// Au-delà de MAX_PER_USER messages pour un même destinataire, seuls les plus récents sont remis.
+public interface OfflineMailbox extends AutoCloseable {
+
+    int MAX_PER_USER = Integer.getInteger("chat.mailbox.maxPerUser", 1000);
+
+    void markKnown(String user) throws IOException;
+
+    boolean isKnown(String user);
+
+    void store(String user, ChatMessage message) throws IOException;
+
+    // Retire et renvoie les messages en attente, du plus ancien au plus récent
+    List<ChatMessage> drain(String user) throws IOException;
+
+    void flush() throws IOException;
+
+    @Override
+    void close() throws IOException;
+}
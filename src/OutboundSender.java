@@ -0,0 +1,164 @@
+import javax.swing.*;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Envois vers le serveur hors de l'EDT. Un seul thread d'envoi garde l'ordre des
+// messages de l'utilisateur; les lignes tapées ou collées dans une courte fenêtre
+// partent ensemble en un appel sendChatMessages, au rythme d'un seau à jetons.
+public class OutboundSender {
+
+    // Fenêtre de regroupement après le premier message d'un lot
+    private static final long BATCH_WINDOW_MS = Long.getLong("chat.send.batchWindowMs", 20);
+    private static final int MAX_BATCH_SIZE = Integer.getInteger("chat.send.maxBatch", 64);
+    // Débit soutenu et rafale autorisés (messages)
+    private static final double RATE_PER_SECOND = Double.parseDouble(System.getProperty("chat.send.ratePerSecond", "20"));
+    private static final double BURST = Double.parseDouble(System.getProperty("chat.send.burst", "40"));
+
+    public interface Callback {
+        // Appelé sur l'EDT; error vaut null si le serveur a accepté le message
+        void onComplete(ChatMessage message, Exception error);
+    }
+
+    private static final class Pending {
+        final ChatMessage message;
+        final Callback callback;
+
+        Pending(ChatMessage message, Callback callback) {
+            this.message = message;
+            this.callback = callback;
+        }
+    }
+
+    private final LinkedBlockingDeque<Pending> queue = new LinkedBlockingDeque<>();
+    private final TokenBucket bucket = new TokenBucket(RATE_PER_SECOND, BURST);
+    private final AtomicLong nextMessageId = new AtomicLong(System.nanoTime());
+    private final ClientMetrics metrics;
+    private volatile ChatServer server;
+    // Méthodes d'envoi absentes d'un serveur plus ancien
+    private volatile boolean batchUnsupported = false;
+    private volatile boolean legacyServer = false; // Serveur sans sendChatMessage
+    // Compteur de Lamport sur 32 bits des anciens serveurs (thread d'envoi seulement). En mode
+    // hlc l'horloge vaut des millisecondes décalées de 16 bits: tronquée en int, elle donnerait
+    // n'importe quoi, souvent négatif. Il avance à chaque envoi et suit l'horloge tant qu'elle tient.
+    private int legacyClock = 0;
+
+    public OutboundSender(ClientMetrics metrics) {
+        this.metrics = metrics;
+        Thread dispatcher = new Thread(this::dispatchLoop, "chat-sender");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    public void setServer(ChatServer server) {
+        this.server = server;
+        this.batchUnsupported = false;
+        this.legacyServer = false;
+    }
+
+    public long nextMessageId() {
+        return nextMessageId.incrementAndGet();
+    }
+
+    public boolean isLegacyServer() {
+        return legacyServer;
+    }
+
+    public void submit(ChatMessage message, Callback callback) {
+        queue.offer(new Pending(message, callback));
+    }
+
+    private void dispatchLoop() {
+        while (true) {
+            try {
+                List<Pending> batch = nextBatch();
+                Exception error = null;
+                try {
+                    long start = System.nanoTime();
+                    send(server, batch);
+                    metrics.recordSend(System.nanoTime() - start);
+                } catch (Exception e) {
+                    error = e;
+                }
+                Exception result = error;
+                SwingUtilities.invokeLater(() -> {
+                    for (Pending pending : batch) {
+                        pending.callback.onComplete(pending.message, result);
+                    }
+                });
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    // Attend un premier message, laisse la fenêtre se remplir, puis limite le lot aux jetons disponibles
+    private List<Pending> nextBatch() throws InterruptedException {
+        List<Pending> batch = new ArrayList<>();
+        batch.add(queue.take());
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(BATCH_WINDOW_MS);
+        while (batch.size() < MAX_BATCH_SIZE) {
+            long remaining = deadline - System.nanoTime();
+            Pending next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+            if (next == null) break;
+            batch.add(next);
+        }
+
+        long wait;
+        while ((wait = bucket.nanosUntilAvailable()) > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+        int granted = bucket.tryAcquireUpTo(batch.size());
+        // Le surplus repart en tête de file, dans l'ordre, pour le lot suivant
+        for (int i = batch.size() - 1; i >= granted; i--) {
+            queue.offerFirst(batch.remove(i));
+        }
+        return batch;
+    }
+
+    // Repli progressif: sendChatMessages, puis sendChatMessage, puis l'appel texte historique
+    private void send(ChatServer target, List<Pending> batch) throws RemoteException {
+        if (!batchUnsupported && batch.size() > 1) {
+            List<ChatMessage> messages = new ArrayList<>(batch.size());
+            for (Pending pending : batch) {
+                messages.add(pending.message);
+            }
+            try {
+                target.sendChatMessages(messages);
+                return;
+            } catch (RemoteException e) {
+                if (!RmiCompat.isUnsupportedMethod(e)) throw e;
+                batchUnsupported = true;
+            }
+        }
+        for (Pending pending : batch) {
+            send(target, pending.message);
+        }
+    }
+
+    private void send(ChatServer target, ChatMessage message) throws RemoteException {
+        if (!legacyServer) {
+            try {
+                target.sendChatMessage(message);
+                return;
+            } catch (RemoteException e) {
+                if (!RmiCompat.isUnsupportedMethod(e)) throw e;
+                legacyServer = true;
+            }
+        }
+        target.sendMessage(message.getSender(), message.getBody(), legacyTime(message.getLamportTime()));
+    }
+
+    private int legacyTime(long lamportTime) {
+        if (legacyClock < Integer.MAX_VALUE) {
+            legacyClock++;
+        }
+        if (lamportTime > legacyClock && lamportTime <= Integer.MAX_VALUE) {
+            legacyClock = (int) lamportTime;
+        }
+        return legacyClock;
+    }
+}
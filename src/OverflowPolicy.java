@@ -0,0 +1,11 @@
+// Conduite d'une ClientDelivery dont la file atteint sa capacité (client trop lent)
+public enum OverflowPolicy {
+    // Les tâches les plus anciennes sont abandonnées (un trou de version de présence
+    // déclenche ensuite une resynchronisation demandée par le client)
+    DROP_OLDEST,
+    // Les deltas de présence en attente sont remplacés par une seule liste complète;
+    // s'il n'y en a pas, repli sur DROP_OLDEST
+    COLLAPSE_PRESENCE,
+    // File vidée et client retiré; sa session reste reprenable à partir de son dernier numéro
+    DISCONNECT
+}
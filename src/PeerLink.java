@@ -0,0 +1,174 @@
+import java.rmi.ConnectException;
+import java.rmi.NotBoundException;
+import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+// Lien sortant vers un autre nœud: une file FIFO vidée par un seul worker à la fois, pour
+// que le pair reçoive les appels dans l'ordre où ils ont été émis. Les messages consécutifs
+// partent en un seul relayMessages. Sur une panne du lien, l'appel en tête est retenté
+// jusqu'au retour du pair: rien n'est réordonné, et la file pleine refuse les nouveaux.
+// La première panne est signalée (onFailure); au retour du lien, onConnect passe avant la
+// tête de file, pour que le pair, peut-être redémarré entre-temps, reparte d'un état complet.
+public class PeerLink implements Runnable {
+
+    private static final int MAX_BATCH_SIZE = 256;
+    private static final int MAX_QUEUE = Integer.getInteger("chat.federation.maxQueue", 100_000);
+    private static final long RETRY_DELAY_MS = Long.getLong("chat.federation.retryMs", 1000);
+
+    public interface Call {
+        void run(ChatPeer peer) throws RemoteException;
+    }
+
+    private final String localNode;
+    private final String node;
+    private final Executor executor;
+    private final Call onConnect;
+    private final Runnable onFailure;
+    private final ArrayDeque<Object> queue = new ArrayDeque<>(); // ChatMessage ou Call
+    private boolean scheduled = false;
+    private volatile boolean closed = false;
+    private volatile ChatPeer stub;
+    private long dropped = 0;
+    private boolean connected = false; // Lu et écrit par le worker seulement
+
+    public PeerLink(String localNode, String node, Executor executor, Call onConnect, Runnable onFailure) {
+        this.localNode = localNode;
+        this.node = node;
+        this.executor = executor;
+        this.onConnect = onConnect;
+        this.onFailure = onFailure;
+    }
+
+    // Contacte le pair sans attendre un premier envoi: onConnect part dès qu'il répond
+    public void start() {
+        enqueue(peer -> { });
+    }
+
+    public String getNode() {
+        return node;
+    }
+
+    public void enqueueMessage(ChatMessage message) {
+        enqueue(message);
+    }
+
+    public void enqueue(Call call) {
+        enqueue((Object) call);
+    }
+
+    private void enqueue(Object item) {
+        synchronized (queue) {
+            if (closed) return;
+            if (queue.size() >= MAX_QUEUE) {
+                if (dropped++ % 1000 == 0) {
+                    System.err.println("File vers " + node + " pleine: " + dropped + " envoi(s) abandonné(s)");
+                }
+                return;
+            }
+            queue.add(item);
+            if (scheduled) return;
+            scheduled = true;
+        }
+        executor.execute(this);
+    }
+
+    // Stub du pair, recherché dans son registre à la première utilisation et après une panne
+    public ChatPeer peer() throws RemoteException {
+        ChatPeer current = stub;
+        if (current != null) return current;
+        int colon = node.lastIndexOf(':');
+        try {
+            current = (ChatPeer) LocateRegistry.getRegistry(node.substring(0, colon),
+                    Integer.parseInt(node.substring(colon + 1))).lookup("ChatPeer");
+        } catch (NotBoundException e) {
+            throw new ConnectException("Nœud " + node + " pas encore prêt");
+        }
+        stub = current;
+        return current;
+    }
+
+    @Override
+    public void run() {
+        while (!closed) {
+            Object head;
+            List<ChatMessage> batch = null;
+            synchronized (queue) {
+                head = queue.peek();
+                if (head == null) {
+                    scheduled = false;
+                    return;
+                }
+                if (head instanceof ChatMessage) {
+                    batch = new ArrayList<>();
+                    for (Object item : queue) {
+                        if (!(item instanceof ChatMessage) || batch.size() == MAX_BATCH_SIZE) break;
+                        batch.add((ChatMessage) item);
+                    }
+                }
+            }
+            if (!send(head, batch)) {
+                continue; // Même tête, après la pause
+            }
+            synchronized (queue) {
+                int sent = batch != null ? batch.size() : 1;
+                for (int i = 0; i < sent; i++) {
+                    queue.poll();
+                }
+            }
+        }
+    }
+
+    // false si l'envoi est à retenter
+    private boolean send(Object head, List<ChatMessage> batch) {
+        try {
+            ChatPeer peer = peer();
+            if (!connected) {
+                resync(peer);
+            }
+            if (batch != null) {
+                peer.relayMessages(localNode, batch);
+            } else {
+                ((Call) head).run(peer);
+            }
+            return true;
+        } catch (RemoteException e) {
+            if (!RmiCompat.isConnectionFailure(e)) {
+                System.err.println("Appel refusé par " + node + ": " + e.getMessage());
+                return true;
+            }
+            stub = null;
+            if (connected) {
+                connected = false;
+                onFailure.run();
+            }
+            try {
+                Thread.sleep(RETRY_DELAY_MS);
+            } catch (InterruptedException interrupted) {
+                closed = true;
+            }
+            return false;
+        }
+    }
+
+    // Un pair qui refuse la resynchronisation (version plus ancienne) reçoit quand même la file
+    private void resync(ChatPeer peer) throws RemoteException {
+        try {
+            onConnect.run(peer);
+        } catch (RemoteException e) {
+            if (RmiCompat.isConnectionFailure(e)) throw e;
+            System.err.println("Resynchronisation refusée par " + node + ": " + e.getMessage());
+        }
+        connected = true;
+    }
+
+    public void close() {
+        synchronized (queue) {
+            closed = true;
+            queue.clear();
+        }
+    }
+}
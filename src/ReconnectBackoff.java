@@ -0,0 +1,29 @@
+import java.util.concurrent.ThreadLocalRandom;
+
+// Délais entre tentatives de reconnexion: plafond doublé à chaque échec, délai tiré
+// au hasard sous ce plafond pour que les clients coupés ensemble ne reviennent pas ensemble.
+public class ReconnectBackoff {
+
+    private final long baseMillis;
+    private final long maxMillis;
+    private int attempts = 0;
+
+    public ReconnectBackoff(long baseMillis, long maxMillis) {
+        this.baseMillis = baseMillis;
+        this.maxMillis = maxMillis;
+    }
+
+    public long nextDelayMillis() {
+        long ceiling = Math.min(maxMillis, baseMillis << Math.min(attempts, 20));
+        attempts++;
+        return ThreadLocalRandom.current().nextLong(baseMillis / 2, Math.max(baseMillis / 2 + 1, ceiling + 1));
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void reset() {
+        attempts = 0;
+    }
+}
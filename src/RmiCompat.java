@@ -0,0 +1,31 @@
+import java.io.IOException;
+import java.rmi.ConnectException;
+import java.rmi.ConnectIOException;
+import java.rmi.NoSuchObjectException;
+import java.rmi.RemoteException;
+import java.rmi.ServerException;
+import java.rmi.UnmarshalException;
+
+// Détection des pairs RMI compilés avant l'ajout d'une méthode distante,
+// et des échecs dus au lien plutôt qu'à l'appel lui-même
+public final class RmiCompat {
+
+    private RmiCompat() {
+    }
+
+    // Un stub ancien rejette une méthode inconnue avec "unrecognized method hash"
+    public static boolean isUnsupportedMethod(RemoteException e) {
+        Throwable cause = e instanceof ServerException ? e.getCause() : e;
+        return cause instanceof UnmarshalException
+                && cause.getMessage() != null
+                && cause.getMessage().contains("unrecognized method hash");
+    }
+
+    // Serveur injoignable, redémarré (objet exporté inconnu) ou connexion coupée en cours d'appel
+    public static boolean isConnectionFailure(RemoteException e) {
+        return e instanceof ConnectException
+                || e instanceof ConnectIOException
+                || e instanceof NoSuchObjectException
+                || (e instanceof UnmarshalException && e.getCause() instanceof IOException);
+    }
+}
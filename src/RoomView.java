@@ -0,0 +1,190 @@
+import javax.swing.*;
+import javax.swing.text.StyleContext;
+import java.awt.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+// Onglet d'un salon. La zone de texte et son document ne sont créés qu'au premier
+// affichage de l'onglet; d'ici là les messages reçus attendent dans un tampon borné.
+// Tout message affiché ou mis en attente est confié à l'index de recherche.
+// Toutes les méthodes s'exécutent sur l'EDT.
+public class RoomView {
+
+    private final String room;
+    private final Supplier<JTextPane> textPaneFactory;
+    private final StyleContext styles;
+    private final SearchIndex searchIndex;
+    private final JPanel container = new JPanel(new BorderLayout());
+    private final ArrayDeque<ChatTranscript.Entry> pending = new ArrayDeque<>();
+    private ChatTranscript transcript;
+    private int unread = 0;
+    private long oldestSeq = 0; // Plus petit numéro de journal reçu en direct (0 = aucun)
+    private long newestSeq = 0; // Plus grand, pour écarter les doublons d'un rejeu
+    private long liveNewestSeq = 0;
+    private long restoredSeq = 0; // Dernier numéro relu du cache local: les messages manqués suivent
+    private int liveCount = 0;  // Messages reçus en direct, placés après ceux du cache local
+
+    public RoomView(String room, Supplier<JTextPane> textPaneFactory, StyleContext styles, SearchIndex searchIndex) {
+        this.room = room;
+        this.textPaneFactory = textPaneFactory;
+        this.styles = styles;
+        this.searchIndex = searchIndex;
+    }
+
+    public String getRoom() {
+        return room;
+    }
+
+    public Component getComponent() {
+        return container;
+    }
+
+    public String getTitle() {
+        return unread > 0 ? "#" + room + " (" + unread + ")" : "#" + room;
+    }
+
+    public void append(List<ChatTranscript.Entry> entries, boolean visible) {
+        if (!visible) {
+            unread += entries.size();
+        }
+        liveCount += entries.size();
+        searchIndex.addAll(room, entries);
+        if (transcript != null) {
+            transcript.appendAll(entries);
+            return;
+        }
+        // Pas encore affiché: seuls les derniers messages seront rendus au premier affichage
+        for (ChatTranscript.Entry entry : entries) {
+            pending.addLast(entry);
+            if (pending.size() > ChatTranscript.DEFAULT_MAX_MESSAGES) {
+                pending.pollFirst();
+            }
+        }
+    }
+
+    // Messages de la session précédente relus du cache local, adoptés une fois connecté: ni non
+    // lus, ni comptés en direct, et placés avant les messages déjà reçus en direct
+    public void appendRestored(List<ChatTranscript.Entry> entries) {
+        searchIndex.addAll(room, entries);
+        insertBeforeLive(entries);
+    }
+
+    // Messages envoyés par le serveur après le dernier du cache: ils s'intercalent entre le
+    // cache et les messages reçus en direct depuis la connexion
+    public void appendDelta(List<ChatTranscript.Entry> entries) {
+        searchIndex.addAll(room, entries);
+        insertBeforeLive(entries);
+    }
+
+    private void insertBeforeLive(List<ChatTranscript.Entry> entries) {
+        if (transcript != null) {
+            transcript.insertBeforeNewest(liveCount, entries);
+            return;
+        }
+        ArrayDeque<ChatTranscript.Entry> newer = new ArrayDeque<>();
+        for (int i = 0; i < liveCount && !pending.isEmpty(); i++) {
+            newer.addFirst(pending.pollLast());
+        }
+        pending.addAll(entries);
+        pending.addAll(newer);
+        while (pending.size() > ChatTranscript.DEFAULT_MAX_MESSAGES) {
+            pending.pollFirst();
+        }
+    }
+
+    // Écho local d'un message envoyé, affiché tout de suite; renvoie la zone qui l'affiche
+    public ChatTranscript appendEcho(ChatTranscript.Entry entry) {
+        ChatTranscript target = getTranscript();
+        target.append(entry);
+        liveCount++;
+        searchIndex.addAll(room, List.of(entry));
+        return target;
+    }
+
+    // Résultat de recherche: false si le message est sorti de l'historique gardé par l'onglet
+    public boolean reveal(ChatTranscript.Entry entry) {
+        return getTranscript().reveal(entry);
+    }
+
+    // Numéro d'un message reçu en direct: l'historique chargé ensuite s'arrête avant lui
+    public void noteSeq(long seq) {
+        if (seq > 0 && (oldestSeq == 0 || seq < oldestSeq)) {
+            oldestSeq = seq;
+        }
+        newestSeq = Math.max(newestSeq, seq);
+        liveNewestSeq = Math.max(liveNewestSeq, seq);
+    }
+
+    // Message d'historique affiché: seul le dernier numéro vu avance
+    public void markSeen(long seq) {
+        newestSeq = Math.max(newestSeq, seq);
+    }
+
+    // Message relu du cache local
+    public void markRestored(long seq) {
+        restoredSeq = Math.max(restoredSeq, seq);
+        markSeen(seq);
+    }
+
+    public long getNewestSeq() {
+        return newestSeq;
+    }
+
+    // 0 si rien n'a été relu du cache pour ce salon
+    public long getRestoredSeq() {
+        return restoredSeq;
+    }
+
+    // Le journal du serveur a recommencé: les numéros du cache local ne valent plus rien
+    public void forgetRestoredSeq() {
+        restoredSeq = 0;
+        newestSeq = liveNewestSeq;
+    }
+
+    public boolean precedesLive(long seq) {
+        return oldestSeq == 0 || seq < oldestSeq;
+    }
+
+    // Historique du serveur, du plus ancien au plus récent, placé avant les messages reçus
+    public void prependHistory(List<ChatTranscript.Entry> entries) {
+        searchIndex.addAll(room, entries);
+        if (transcript != null) {
+            transcript.prependAll(entries);
+            return;
+        }
+        for (int i = entries.size() - 1; i >= 0 && pending.size() < ChatTranscript.DEFAULT_MAX_MESSAGES; i--) {
+            pending.addFirst(entries.get(i));
+        }
+    }
+
+    // 0 tant que l'onglet n'a jamais été affiché
+    public int getDocumentLength() {
+        return transcript != null ? transcript.getDocumentLength() : 0;
+    }
+
+    // Appelé quand l'onglet devient visible
+    public void show() {
+        unread = 0;
+        getTranscript();
+    }
+
+    public ChatTranscript getTranscript() {
+        if (transcript == null) {
+            JTextPane textPane = textPaneFactory.get();
+            JScrollPane scrollPane = new JScrollPane(textPane);
+            scrollPane.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED);
+            scrollPane.setBorder(BorderFactory.createEmptyBorder());
+            scrollPane.getViewport().setBackground(textPane.getBackground());
+            transcript = new ChatTranscript(textPane, scrollPane, styles);
+            container.add(scrollPane, BorderLayout.CENTER);
+            container.revalidate();
+            if (!pending.isEmpty()) {
+                transcript.appendAll(new ArrayList<>(pending));
+                pending.clear();
+            }
+        }
+        return transcript;
+    }
+}
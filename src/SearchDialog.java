@@ -0,0 +1,57 @@
+import javax.swing.*;
+import java.awt.*;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Résultats de recherche, du plus récent au plus ancien: sélectionner une ligne (clic ou
+// flèches) fait défiler la discussion jusqu'au message.
+public class SearchDialog extends JDialog {
+
+    private final DefaultListModel<SearchIndex.Hit> model = new DefaultListModel<>();
+    private final JList<SearchIndex.Hit> results = new JList<>(model);
+    private final JLabel summary = new JLabel();
+
+    private SearchDialog(JFrame owner) {
+        super(owner, "🔍 Recherche", false);
+    }
+
+    // Contenu et écouteurs posés une fois le dialogue entièrement construit
+    public static SearchDialog create(JFrame owner, Consumer<SearchIndex.Hit> onSelect) {
+        SearchDialog dialog = new SearchDialog(owner);
+        dialog.buildContent(owner, onSelect);
+        return dialog;
+    }
+
+    private void buildContent(JFrame owner, Consumer<SearchIndex.Hit> onSelect) {
+        results.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        results.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 12));
+        results.addListSelectionListener(e -> {
+            if (!e.getValueIsAdjusting() && results.getSelectedValue() != null) {
+                onSelect.accept(results.getSelectedValue());
+            }
+        });
+
+        summary.setBorder(BorderFactory.createEmptyBorder(8, 12, 8, 12));
+        add(summary, BorderLayout.NORTH);
+        add(new JScrollPane(results), BorderLayout.CENTER);
+        setSize(520, 320);
+        setLocationRelativeTo(owner);
+    }
+
+    public void showResults(String query, List<SearchIndex.Hit> hits, long micros) {
+        model.clear();
+        for (SearchIndex.Hit hit : hits) {
+            model.addElement(hit);
+        }
+        String time = micros >= 1000 ? String.format("%.1f ms", micros / 1000.0) : micros + " µs";
+        summary.setText(hits.isEmpty()
+                ? "Aucun message ne contient « " + query + " » (" + time + ")"
+                : hits.size() + (hits.size() == SearchIndex.MAX_RESULTS ? " derniers" : "")
+                        + " résultat(s) pour « " + query + " » (" + time + ")");
+        setVisible(true);
+        if (!hits.isEmpty()) {
+            results.setSelectedIndex(0);
+            results.requestFocusInWindow();
+        }
+    }
+}
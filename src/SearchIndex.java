@@ -0,0 +1,255 @@
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Index inversé des messages affichés, pour la recherche du client. Chaque message reçoit
+// un numéro croissant; chaque mot (minuscules, sans accents) pointe vers une liste triée de
+// numéros en tableau d'int. Une recherche intersecte les listes de ses mots en partant de la
+// fin: les plus récents sortent d'abord et elle s'arrête au nombre de résultats voulu.
+// L'EDT ne fait que confier les messages au thread d'indexation, qui seul lit et modifie
+// l'index: indexation et recherches n'ont besoin d'aucun verrou.
+// Par salon, l'index ne garde pas plus de messages que l'onglet (document, au plus deux fois
+// maxMessages, et archive): il ne retient aucune entrée que la discussion aurait oubliée.
+public class SearchIndex {
+
+    public static final int DEFAULT_MAX_PER_ROOM =
+            2 * ChatTranscript.DEFAULT_MAX_MESSAGES + ChatTranscript.DEFAULT_ARCHIVE_SIZE;
+    public static final int MAX_RESULTS = 200;
+
+    // Message trouvé et onglet où il est affiché
+    public static final class Hit {
+        final String room;
+        final ChatTranscript.Entry entry;
+
+        Hit(String room, ChatTranscript.Entry entry) {
+            this.room = room;
+            this.entry = entry;
+        }
+
+        public String getRoom() {
+            return room;
+        }
+
+        public ChatTranscript.Entry getEntry() {
+            return entry;
+        }
+
+        @Override
+        public String toString() {
+            return "#" + room + "  [" + entry.timestamp + "] " + entry.message;
+        }
+    }
+
+    // Liste de numéros croissants, sans objet par élément
+    private static final class Postings {
+        int[] values = new int[4];
+        int size = 0;
+
+        void add(int document) {
+            if (size > 0 && values[size - 1] == document) return; // Mot répété dans le message
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = document;
+        }
+
+        // Dernière position dont la valeur est <= document, ou -1
+        int floor(int document, int to) {
+            int low = 0;
+            int high = to;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                if (values[middle] <= document) {
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return high;
+        }
+    }
+
+    // Numéros encore indexés d'un salon, du plus ancien au plus récent (file circulaire)
+    private static final class RoomDocuments {
+        int[] values = new int[16];
+        int head = 0;
+        int size = 0;
+
+        void addNewest(int document) {
+            if (size == values.length) {
+                int[] grown = new int[size * 2];
+                for (int i = 0; i < size; i++) {
+                    grown[i] = values[(head + i) % values.length];
+                }
+                values = grown;
+                head = 0;
+            }
+            values[(head + size) % values.length] = document;
+            size++;
+        }
+
+        int pollOldest() {
+            int document = values[head];
+            head = (head + 1) % values.length;
+            size--;
+            return document;
+        }
+    }
+
+    private final int maxPerRoom;
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "chat-search-index");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Réservé au thread d'indexation
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final Map<String, RoomDocuments> roomDocuments = new HashMap<>();
+    // Numéro -> entrée; null une fois oubliée (ses numéros restent dans les listes jusqu'au compactage)
+    private ChatTranscript.Entry[] documents = new ChatTranscript.Entry[1024];
+    private String[] rooms = new String[1024];
+    private int documentCount = 0;
+    private int liveCount = 0;
+
+    public SearchIndex() {
+        this(DEFAULT_MAX_PER_ROOM);
+    }
+
+    public SearchIndex(int maxPerRoom) {
+        this.maxPerRoom = Math.max(1, maxPerRoom);
+    }
+
+    // Appelé sur l'EDT: une seule tâche par lot, le découpage en mots se fait ailleurs
+    public void addAll(String room, List<ChatTranscript.Entry> entries) {
+        if (entries.isEmpty()) return;
+        List<ChatTranscript.Entry> batch = new ArrayList<>(entries);
+        worker.execute(() -> {
+            for (ChatTranscript.Entry entry : batch) {
+                index(room, entry);
+            }
+        });
+    }
+
+    // Salon quitté: ses messages ne sont plus affichés nulle part
+    public void removeRoom(String room) {
+        worker.execute(() -> {
+            RoomDocuments owned = roomDocuments.remove(room);
+            while (owned != null && owned.size > 0) {
+                forget(owned.pollOldest());
+            }
+        });
+    }
+
+    // Tous les mots de la requête, résultats du plus récent au plus ancien
+    public CompletableFuture<List<Hit>> search(String query) {
+        return CompletableFuture.supplyAsync(() -> find(query, MAX_RESULTS), worker);
+    }
+
+    public void close() {
+        worker.shutdownNow();
+    }
+
+    private void index(String room, ChatTranscript.Entry entry) {
+        if (documentCount == documents.length) {
+            if (liveCount * 2 <= documentCount) {
+                compact();
+            } else {
+                documents = Arrays.copyOf(documents, documentCount * 2);
+                rooms = Arrays.copyOf(rooms, documentCount * 2);
+            }
+        }
+        int document = documentCount++;
+        documents[document] = entry;
+        rooms[document] = room;
+        liveCount++;
+        RoomDocuments owned = roomDocuments.computeIfAbsent(room, key -> new RoomDocuments());
+        owned.addNewest(document);
+        if (owned.size > maxPerRoom) {
+            forget(owned.pollOldest());
+        }
+        for (String word : tokenize(entry.message)) {
+            postings.computeIfAbsent(word, key -> new Postings()).add(document);
+        }
+    }
+
+    private void forget(int document) {
+        documents[document] = null;
+        rooms[document] = null;
+        liveCount--;
+    }
+
+    // Plus de la moitié des numéros sont oubliés: l'index est reconstruit avec les seuls
+    // messages gardés, renumérotés; au plus une fois par remplissage des tableaux, donc en
+    // temps amorti constant
+    private void compact() {
+        ChatTranscript.Entry[] oldDocuments = documents;
+        String[] oldRooms = rooms;
+        int oldCount = documentCount;
+        postings.clear();
+        roomDocuments.clear();
+        documents = new ChatTranscript.Entry[oldDocuments.length];
+        rooms = new String[oldRooms.length];
+        documentCount = 0;
+        liveCount = 0;
+        for (int i = 0; i < oldCount; i++) {
+            if (oldDocuments[i] != null) {
+                index(oldRooms[i], oldDocuments[i]);
+            }
+        }
+    }
+
+    private List<Hit> find(String query, int limit) {
+        List<String> words = tokenize(query);
+        List<Hit> hits = new ArrayList<>();
+        if (words.isEmpty()) return hits;
+        Postings[] lists = new Postings[words.size()];
+        for (int i = 0; i < lists.length; i++) {
+            lists[i] = postings.get(words.get(i));
+            if (lists[i] == null) return hits;
+        }
+        // La liste la plus courte mène, les autres ne sont consultées que par recherche dichotomique
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+        Postings lead = lists[0];
+        int[] bounds = new int[lists.length];
+        for (int i = 0; i < lists.length; i++) {
+            bounds[i] = lists[i].size - 1;
+        }
+        for (int position = lead.size - 1; position >= 0 && hits.size() < limit; position--) {
+            int document = lead.values[position];
+            boolean everywhere = true;
+            for (int i = 1; i < lists.length && everywhere; i++) {
+                bounds[i] = lists[i].floor(document, bounds[i]);
+                everywhere = bounds[i] >= 0 && lists[i].values[bounds[i]] == document;
+            }
+            if (everywhere && documents[document] != null) {
+                hits.add(new Hit(rooms[document], documents[document]));
+            }
+        }
+        return hits;
+    }
+
+    // Mots en minuscules sans accents: "Déconnecté" et "deconnecte" se retrouvent
+    static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) return words;
+        String folded = Normalizer.normalize(text.toLowerCase(), Normalizer.Form.NFD);
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i <= folded.length(); i++) {
+            char c = i < folded.length() ? folded.charAt(i) : ' ';
+            if (Character.getType(c) == Character.NON_SPACING_MARK) continue;
+            if (Character.isLetterOrDigit(c)) {
+                word.append(c);
+            } else if (word.length() > 0) {
+                words.add(word.toString());
+                word.setLength(0);
+            }
+        }
+        return words;
+    }
+}
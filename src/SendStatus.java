@@ -0,0 +1,17 @@
+// État d'envoi d'un message affiché en écho local, marqué d'un caractère en fin de ligne
+public enum SendStatus {
+    PENDING("⏳"),
+    SENT("✓"),
+    FAILED("⚠");
+
+    // Un seul char par marque: la longueur de l'entrée ne change pas quand l'état change
+    private final String mark;
+
+    SendStatus(String mark) {
+        this.mark = mark;
+    }
+
+    public String getMark() {
+        return mark;
+    }
+}
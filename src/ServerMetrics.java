@@ -0,0 +1,141 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Compteurs et histogrammes du serveur, exposés par JMX. Les mesures sont faites par
+// ChatServerImpl et ClientDelivery; les profondeurs de file sont lues à la demande dans
+// l'instantané du registre, sans coût sur le chemin des messages.
+public class ServerMetrics implements ServerMetricsMBean {
+
+    private static final int SLOWEST_CLIENTS = 10;
+
+    private final ClientRegistry clients;
+    private final LatencyHistogram fanOut = new LatencyHistogram();
+    private final LatencyHistogram callbacks = new LatencyHistogram();
+    private final AtomicLong messagesReceived = new AtomicLong();
+    // Échantillonné chaque seconde par sample()
+    private long lastSampleCount = 0;
+    private long lastSampleNanos = System.nanoTime();
+    private volatile double messagesPerSecond = 0;
+
+    public ServerMetrics(ClientRegistry clients) {
+        this.clients = clients;
+    }
+
+    public void onMessageReceived() {
+        messagesReceived.incrementAndGet();
+    }
+
+    public void recordFanOut(long nanos) {
+        fanOut.record(nanos / 1000);
+    }
+
+    public LatencyHistogram getCallbackHistogram() {
+        return callbacks;
+    }
+
+    // Appelé périodiquement par le serveur
+    public synchronized void sample() {
+        long now = System.nanoTime();
+        long count = messagesReceived.get();
+        messagesPerSecond = (count - lastSampleCount) * 1_000_000_000.0 / Math.max(1, now - lastSampleNanos);
+        lastSampleCount = count;
+        lastSampleNanos = now;
+    }
+
+    @Override
+    public double getMessagesPerSecond() {
+        return messagesPerSecond;
+    }
+
+    @Override
+    public long getMessagesReceived() {
+        return messagesReceived.get();
+    }
+
+    @Override
+    public long getFanOutP50Micros() {
+        return fanOut.getPercentile(50);
+    }
+
+    @Override
+    public long getFanOutP99Micros() {
+        return fanOut.getPercentile(99);
+    }
+
+    @Override
+    public long getFanOutMaxMicros() {
+        return fanOut.getMax();
+    }
+
+    @Override
+    public long getCallbackP50Micros() {
+        return callbacks.getPercentile(50);
+    }
+
+    @Override
+    public long getCallbackP99Micros() {
+        return callbacks.getPercentile(99);
+    }
+
+    @Override
+    public long getCallbackP999Micros() {
+        return callbacks.getPercentile(99.9);
+    }
+
+    @Override
+    public long getCallbackCount() {
+        return callbacks.getCount();
+    }
+
+    @Override
+    public String[] getSlowestClients() {
+        ClientDelivery[] deliveries = clients.snapshot().getDeliveries().clone();
+        Arrays.sort(deliveries, Comparator.comparingDouble(ClientDelivery::getMeanCallbackMicros).reversed());
+        List<String> slowest = new ArrayList<>();
+        for (int i = 0; i < Math.min(SLOWEST_CLIENTS, deliveries.length); i++) {
+            slowest.add(String.format("%s: %.0f µs", deliveries[i].getName(), deliveries[i].getMeanCallbackMicros()));
+        }
+        return slowest.toArray(new String[0]);
+    }
+
+    @Override
+    public int getRegisteredClients() {
+        return clients.snapshot().getDeliveries().length;
+    }
+
+    @Override
+    public int getTotalQueueDepth() {
+        int total = 0;
+        for (ClientDelivery delivery : clients.snapshot().getDeliveries()) {
+            total += delivery.getQueueDepth();
+        }
+        return total;
+    }
+
+    @Override
+    public int getMaxQueueDepth() {
+        int max = 0;
+        for (ClientDelivery delivery : clients.snapshot().getDeliveries()) {
+            max = Math.max(max, delivery.getQueueDepth());
+        }
+        return max;
+    }
+
+    @Override
+    public long getDroppedMessages() {
+        long total = 0;
+        for (ClientDelivery delivery : clients.snapshot().getDeliveries()) {
+            total += delivery.getDroppedMessages();
+        }
+        return total;
+    }
+
+    @Override
+    public void resetStatistics() {
+        fanOut.reset();
+        callbacks.reset();
+    }
+}
@@ -0,0 +1,38 @@
+// Interface JMX du serveur (jconsole: chat:type=Server). Latences en microsecondes.
+public interface ServerMetricsMBean {
+
+    // Messages reçus des clients, par seconde (dernière seconde écoulée) et au total
+    double getMessagesPerSecond();
+
+    long getMessagesReceived();
+
+    // Mise en file d'un message pour tous les membres du salon, journal compris
+    long getFanOutP50Micros();
+
+    long getFanOutP99Micros();
+
+    long getFanOutMaxMicros();
+
+    // Durée des callbacks vers les clients, tous clients confondus
+    long getCallbackP50Micros();
+
+    long getCallbackP99Micros();
+
+    long getCallbackP999Micros();
+
+    long getCallbackCount();
+
+    // Clients dont les callbacks sont les plus lents en moyenne, "nom: µs"
+    String[] getSlowestClients();
+
+    int getRegisteredClients();
+
+    // Tâches en attente, tous clients confondus, et file la plus longue en ce moment
+    int getTotalQueueDepth();
+
+    int getMaxQueueDepth();
+
+    long getDroppedMessages();
+
+    void resetStatistics();
+}
@@ -0,0 +1,356 @@
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+// Boîte hors ligne sur disque: les utilisateurs sont répartis entre des fichiers de shard en
+// ajout seul. Un enregistrement est [longueur][crc32][type][position précédente][nom][message]:
+// les messages d'un même destinataire forment une chaîne qui remonte du plus récent au plus
+// ancien, si bien que la mémoire ne garde qu'une tête de chaîne et un compteur par utilisateur,
+// quel que soit le nombre de messages en attente. La remise relit la chaîne puis écrit un
+// enregistrement DRAINED; un shard dont plus de la moitié est périmée est réécrit.
+public class ShardedMailbox implements OfflineMailbox {
+
+    public static final int DEFAULT_SHARDS = Integer.getInteger("chat.mailbox.shards", 16);
+    // En dessous, un shard n'est jamais compacté
+    private static final long COMPACT_MIN_BYTES = Long.getLong("chat.mailbox.compactMinBytes", 4 * 1024 * 1024);
+    private static final String SHARD_SUFFIX = ".box";
+    private static final int HEADER_BYTES = 8;
+    // Borne la longueur lue à la reprise: au-delà, l'enregistrement est tenu pour corrompu
+    private static final int MAX_RECORD_BYTES = 16 * 1024 * 1024;
+
+    private static final byte KNOWN = 0;
+    private static final byte STORED = 1;
+    private static final byte DRAINED = 2;
+
+    // Boîte d'un utilisateur: dernier enregistrement STORED (-1 = vide)
+    private static final class Box {
+        long head = -1;
+        int count = 0;  // Messages remis au prochain drain, au plus MAX_PER_USER
+        long bytes = 0; // Taille de ces enregistrements, estimée une fois la limite atteinte
+    }
+
+    private static final class Record {
+        final byte type;
+        final long previous;
+        final String user;
+        final ChatMessage message;
+
+        Record(byte type, long previous, String user, ChatMessage message) {
+            this.type = type;
+            this.previous = previous;
+            this.user = user;
+            this.message = message;
+        }
+    }
+
+    // Toutes les opérations d'un shard se font sous son verrou
+    private static final class Shard {
+        final Path path;
+        FileChannel channel;
+        long size = 0;
+        long liveBytes = 0; // KNOWN et STORED non remis; le reste disparaît au compactage
+        long retryCompactAt = 0; // Après un échec, pas de nouvel essai avant cette taille
+        final Map<String, Box> boxes = new HashMap<>();
+        final ByteArrayOutputStream encodeBuffer = new ByteArrayOutputStream(256);
+        final DataOutputStream encoder = new DataOutputStream(encodeBuffer);
+        final CRC32 crc = new CRC32();
+
+        Shard(Path path) {
+            this.path = path;
+        }
+    }
+
+    private final Shard[] shards;
+
+    private ShardedMailbox(Shard[] shards) {
+        this.shards = shards;
+    }
+
+    public static ShardedMailbox open(Path directory) throws IOException {
+        return open(directory, DEFAULT_SHARDS);
+    }
+
+    // Le nombre de shards fait partie du format: un répertoire doit être rouvert avec le même
+    public static ShardedMailbox open(Path directory, int shardCount) throws IOException {
+        Files.createDirectories(directory);
+        Shard[] shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            Shard shard = new Shard(directory.resolve(String.format("shard-%03d%s", i, SHARD_SUFFIX)));
+            shard.channel = FileChannel.open(shard.path, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            recover(shard);
+            shards[i] = shard;
+        }
+        return new ShardedMailbox(shards);
+    }
+
+    // Relecture séquentielle; le fichier est tronqué au premier enregistrement incomplet ou corrompu
+    private static void recover(Shard shard) throws IOException {
+        long position = 0;
+        shard.channel.position(0);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(shard.channel), 64 * 1024));
+        CRC32 check = new CRC32();
+        while (true) {
+            byte[] body;
+            try {
+                int length = in.readInt();
+                int crc = in.readInt();
+                if (length <= 0 || length > MAX_RECORD_BYTES) break;
+                body = new byte[length];
+                in.readFully(body);
+                check.reset();
+                check.update(body);
+                if ((int) check.getValue() != crc) break;
+            } catch (EOFException e) {
+                break;
+            }
+            Record record = decode(body);
+            int recordBytes = HEADER_BYTES + body.length;
+            Box box = shard.boxes.computeIfAbsent(record.user, user -> new Box());
+            switch (record.type) {
+                case KNOWN:
+                    shard.liveBytes += recordBytes;
+                    break;
+                case STORED:
+                    box.head = position;
+                    addStored(shard, box, recordBytes);
+                    break;
+                default:
+                    shard.liveBytes -= box.bytes;
+                    box.head = -1;
+                    box.count = 0;
+                    box.bytes = 0;
+                    break;
+            }
+            position += recordBytes;
+        }
+        shard.channel.truncate(position);
+        shard.size = position;
+    }
+
+    private Shard shardOf(String user) {
+        return shards[Math.floorMod(user.hashCode(), shards.length)];
+    }
+
+    @Override
+    public void markKnown(String user) throws IOException {
+        Shard shard = shardOf(user);
+        synchronized (shard) {
+            if (shard.boxes.containsKey(user)) return;
+            shard.liveBytes += append(shard, KNOWN, -1, user, null);
+            shard.boxes.put(user, new Box());
+        }
+    }
+
+    @Override
+    public boolean isKnown(String user) {
+        Shard shard = shardOf(user);
+        synchronized (shard) {
+            return shard.boxes.containsKey(user);
+        }
+    }
+
+    @Override
+    public void store(String user, ChatMessage message) throws IOException {
+        Shard shard = shardOf(user);
+        synchronized (shard) {
+            Box box = shard.boxes.computeIfAbsent(user, key -> new Box());
+            long offset = shard.size;
+            int recordBytes = append(shard, STORED, box.head, user, message);
+            box.head = offset;
+            addStored(shard, box, recordBytes);
+            // Un destinataire qui ne revient jamais ne déclenche aucun drain
+            compactIfStale(shard);
+        }
+    }
+
+    // Au-delà de MAX_PER_USER, le plus ancien message de la chaîne ne sera jamais remis et
+    // n'est plus compté comme vivant. Sa taille exacte demanderait de relire toute la chaîne:
+    // on retire la taille moyenne d'un enregistrement de la boîte.
+    private static void addStored(Shard shard, Box box, int recordBytes) {
+        long dropped = 0;
+        if (box.count < MAX_PER_USER) {
+            box.count++;
+        } else if (box.count > 0) {
+            dropped = box.bytes / box.count;
+        }
+        box.bytes += recordBytes - dropped;
+        shard.liveBytes += recordBytes - dropped;
+    }
+
+    @Override
+    public List<ChatMessage> drain(String user) throws IOException {
+        Shard shard = shardOf(user);
+        synchronized (shard) {
+            Box box = shard.boxes.get(user);
+            if (box == null || box.head < 0) return List.of();
+            List<ChatMessage> messages = readChain(shard, box.head, Math.min(box.count, MAX_PER_USER));
+            append(shard, DRAINED, -1, user, null);
+            shard.liveBytes -= box.bytes;
+            box.head = -1;
+            box.count = 0;
+            box.bytes = 0;
+            compactIfStale(shard);
+            return messages;
+        }
+    }
+
+    // Réécrit le shard si plus de la moitié est périmée. L'opération qui y conduit a déjà
+    // abouti (message écrit ou retiré de la boîte): un échec du compactage ne la fait pas échouer.
+    private static void compactIfStale(Shard shard) {
+        if (shard.size < Math.max(COMPACT_MIN_BYTES, shard.retryCompactAt) || shard.liveBytes * 2 >= shard.size) return;
+        try {
+            compact(shard);
+            shard.retryCompactAt = 0;
+        } catch (IOException e) {
+            // Sinon chaque dépôt relirait tout le shard pour échouer de nouveau
+            shard.retryCompactAt = shard.size + COMPACT_MIN_BYTES;
+            System.err.println("Compactage de " + shard.path + " impossible: " + e.getMessage());
+        }
+    }
+
+    // Les limit derniers messages de la chaîne, du plus ancien au plus récent
+    private static List<ChatMessage> readChain(Shard shard, long head, int limit) throws IOException {
+        ChatMessage[] messages = new ChatMessage[limit];
+        long offset = head;
+        int index = limit;
+        while (index > 0 && offset >= 0) {
+            Record record = read(shard, offset);
+            messages[--index] = record.message;
+            offset = record.previous;
+        }
+        return Arrays.asList(messages).subList(index, limit);
+    }
+
+    // Réécrit les enregistrements encore utiles dans un nouveau fichier, remplacé d'un bloc.
+    // En cas d'échec le shard garde son fichier et son canal: seul le .tmp disparaît.
+    private static void compact(Shard shard) throws IOException {
+        Path temporary = shard.path.resolveSibling(shard.path.getFileName() + ".tmp");
+        Shard target = new Shard(shard.path);
+        Map<String, Box> rewritten = new HashMap<>();
+        FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            target.channel = channel;
+            for (Map.Entry<String, Box> entry : shard.boxes.entrySet()) {
+                String user = entry.getKey();
+                Box box = entry.getValue();
+                append(target, KNOWN, -1, user, null);
+                Box copy = new Box();
+                if (box.head >= 0) {
+                    for (ChatMessage message : readChain(shard, box.head, Math.min(box.count, MAX_PER_USER))) {
+                        long offset = target.size;
+                        copy.bytes += append(target, STORED, copy.head, user, message);
+                        copy.head = offset;
+                        copy.count++;
+                    }
+                }
+                rewritten.put(user, copy);
+            }
+            channel.force(true);
+            // Le canal ouvert sur le .tmp suit le fichier renommé: pas de réouverture qui pourrait échouer
+            Files.move(temporary, shard.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        FileChannel previous = shard.channel;
+        shard.channel = channel;
+        try {
+            previous.close();
+        } catch (IOException e) {
+            System.err.println("Fermeture de l'ancien shard impossible: " + e.getMessage());
+        }
+        shard.boxes.clear();
+        shard.boxes.putAll(rewritten);
+        shard.size = target.size;
+        shard.liveBytes = target.size;
+    }
+
+    // Ajoute un enregistrement en fin de shard et renvoie sa taille totale. Un enregistrement
+    // que recover tiendrait pour corrompu est refusé: il emporterait tout le reste du shard.
+    private static int append(Shard shard, byte type, long previous, String user, ChatMessage message) throws IOException {
+        shard.encodeBuffer.reset();
+        DataOutputStream out = shard.encoder;
+        out.writeByte(type);
+        out.writeLong(previous);
+        ChatMessage.writeString(out, user);
+        if (message != null) {
+            message.writeTo(out);
+        }
+        if (shard.encodeBuffer.size() > MAX_RECORD_BYTES) {
+            throw new IOException("Message trop grand pour la boîte hors ligne (" + shard.encodeBuffer.size() + " octets)");
+        }
+        byte[] body = shard.encodeBuffer.toByteArray();
+        shard.crc.reset();
+        shard.crc.update(body);
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + body.length);
+        record.putInt(body.length).putInt((int) shard.crc.getValue()).put(body).flip();
+        long position = shard.size;
+        while (record.hasRemaining()) {
+            position += shard.channel.write(record, position);
+        }
+        shard.size = position;
+        return HEADER_BYTES + body.length;
+    }
+
+    private static Record read(Shard shard, long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        readFully(shard.channel, header, offset);
+        ByteBuffer body = ByteBuffer.allocate(header.getInt(0));
+        readFully(shard.channel, body, offset + HEADER_BYTES);
+        return decode(body.array());
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) throw new EOFException("Boîte hors ligne tronquée");
+        }
+    }
+
+    private static Record decode(byte[] body) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        byte type = in.readByte();
+        long previous = in.readLong();
+        String user = ChatMessage.readString(in);
+        ChatMessage message = type == STORED ? ChatMessage.readFrom(in) : null;
+        return new Record(type, previous, user, message);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                shard.channel.force(false);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                shard.channel.force(true);
+                shard.channel.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,265 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.rmi.ConnectException;
+import java.rmi.RemoteException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Point d'entrée du transport par socket: chaque client ouvre une seule connexion TCP,
+// qui porte ses requêtes et, en sens inverse, les callbacks du serveur. Pas de connexion
+// du serveur vers le client (NAT), pas de sérialisation Java par appel, un thread virtuel
+// par connexion. Les requêtes sont traitées dans l'ordre de réception par le ChatServer.
+public class SocketChatServer implements AutoCloseable {
+
+    private final ChatServer server;
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections = Executors.newVirtualThreadPerTaskExecutor();
+
+    public SocketChatServer(ChatServer server, int port) throws IOException {
+        this.server = server;
+        this.serverSocket = new ServerSocket(port);
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public void start() {
+        Thread acceptor = new Thread(this::acceptLoop, "chat-socket-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                connections.execute(new Connection(socket));
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    System.err.println("Échec d'acceptation d'une connexion: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        connections.shutdownNow();
+    }
+
+    // Une connexion client: lit les requêtes et sert de ChatClient pour les callbacks
+    private final class Connection implements ChatClient, Runnable {
+        private final Socket socket;
+        private final DataOutputStream out;
+        private final Object writeLock = new Object();
+
+        Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+
+        @Override
+        public void run() {
+            try {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                while (true) {
+                    ChatProtocol.Frame frame = ChatProtocol.readFrame(in, ChatProtocol.MAX_REQUEST_BYTES);
+                    respond(frame);
+                }
+            } catch (EOFException e) {
+                // Fermeture par le client; un client parti sans unregisterClient est retiré par son bail
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    System.err.println("Connexion client interrompue: " + e.getMessage());
+                }
+            } finally {
+                closeSocket();
+            }
+        }
+
+        private void closeSocket() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Déjà fermée
+            }
+        }
+
+        private void respond(ChatProtocol.Frame frame) throws IOException {
+            ChatProtocol.Payload result;
+            byte status = ChatProtocol.STATUS_OK;
+            try {
+                result = handle(frame.op, frame.data);
+            } catch (RemoteException e) {
+                status = ChatProtocol.STATUS_ERROR;
+                result = error(e.getMessage());
+            } catch (RuntimeException e) {
+                status = ChatProtocol.STATUS_ERROR;
+                result = error(e.toString());
+            }
+            if (result == null) {
+                status = ChatProtocol.STATUS_UNSUPPORTED;
+                result = error("unrecognized method hash: op " + frame.op);
+            }
+            byte responseStatus = status;
+            ChatProtocol.Payload body = result;
+            write(ChatProtocol.RESPONSE, frame.callId, response -> {
+                response.writeByte(responseStatus);
+                body.write(response);
+            });
+        }
+
+        // Renvoie null pour une opération inconnue (client plus récent que le serveur)
+        private ChatProtocol.Payload handle(byte op, DataInput in) throws IOException {
+            switch (op) {
+                case ChatProtocol.SEND_MESSAGE: {
+                    String name = ChatProtocol.readString(in);
+                    String message = ChatProtocol.readString(in);
+                    server.sendMessage(name, message, in.readInt());
+                    return ChatProtocol.EMPTY;
+                }
+                case ChatProtocol.SEND_CHAT_MESSAGE:
+                    server.sendChatMessage(ChatMessage.readFrom(in));
+                    return ChatProtocol.EMPTY;
+                case ChatProtocol.SEND_CHAT_MESSAGES:
+                    server.sendChatMessages(ChatProtocol.readMessages(in));
+                    return ChatProtocol.EMPTY;
+                case ChatProtocol.REGISTER_CLIENT:
+                    server.registerClient(ChatProtocol.readString(in), this);
+                    return ChatProtocol.EMPTY;
+                case ChatProtocol.UNREGISTER_CLIENT:
+                    server.unregisterClient(ChatProtocol.readString(in));
+                    return ChatProtocol.EMPTY;
+                case ChatProtocol.GET_ONLINE_USERS: {
+                    List<String> users = server.getOnlineUsers();
+                    return out -> ChatProtocol.writeStrings(out, users);
+                }
+                case ChatProtocol.SEND_PRIVATE_MESSAGE: {
+                    String from = ChatProtocol.readString(in);
+                    String to = ChatProtocol.readString(in);
+                    server.sendPrivateMessage(from, to, ChatProtocol.readString(in));
+                    return ChatProtocol.EMPTY;
+                }
+                case ChatProtocol.IS_USER_ONLINE: {
+                    boolean online = server.isUserOnline(ChatProtocol.readString(in));
+                    return out -> out.writeBoolean(online);
+                }
+                case ChatProtocol.REQUEST_USER_LIST_SYNC:
+                    server.requestUserListSync(ChatProtocol.readString(in));
+                    return ChatProtocol.EMPTY;
+                case ChatProtocol.JOIN_ROOM: {
+                    String name = ChatProtocol.readString(in);
+                    server.joinRoom(name, ChatProtocol.readString(in));
+                    return ChatProtocol.EMPTY;
+                }
+                case ChatProtocol.LEAVE_ROOM: {
+                    String name = ChatProtocol.readString(in);
+                    server.leaveRoom(name, ChatProtocol.readString(in));
+                    return ChatProtocol.EMPTY;
+                }
+                case ChatProtocol.GET_ROOMS: {
+                    List<String> rooms = server.getRooms();
+                    return out -> ChatProtocol.writeStrings(out, rooms);
+                }
+                case ChatProtocol.GET_HISTORY: {
+                    String room = ChatProtocol.readString(in);
+                    long fromSeq = in.readLong();
+                    List<ChatMessage> history = server.getHistory(room, fromSeq, in.readInt());
+                    return out -> ChatProtocol.writeMessages(out, history);
+                }
+                case ChatProtocol.OPEN_SESSION: {
+                    long token = server.openSession(ChatProtocol.readString(in), this);
+                    return out -> out.writeLong(token);
+                }
+                case ChatProtocol.RESUME_SESSION: {
+                    String name = ChatProtocol.readString(in);
+                    long token = in.readLong();
+                    boolean resumed = server.resumeSession(name, token, in.readLong(), this);
+                    return out -> out.writeBoolean(resumed);
+                }
+                case ChatProtocol.SEND_DIRECT_MESSAGE: {
+                    DeliveryResult result = server.sendDirectMessage(ChatMessage.readFrom(in));
+                    return out -> out.writeByte(result.ordinal());
+                }
+                case ChatProtocol.HEARTBEAT: {
+                    boolean registered = server.heartbeat(ChatProtocol.readString(in));
+                    return out -> out.writeBoolean(registered);
+                }
+                default:
+                    return null;
+            }
+        }
+
+        private ChatProtocol.Payload error(String message) {
+            return out -> ChatProtocol.writeString(out, message != null ? message : "Erreur du serveur");
+        }
+
+        // Un callback bloque si le client ne lit plus (contre-pression TCP): seul son worker attend
+        private void write(byte op, int callId, ChatProtocol.Payload payload) throws IOException {
+            synchronized (writeLock) {
+                ChatProtocol.writeFrame(out, op, callId, payload);
+            }
+        }
+
+        private void callback(byte op, ChatProtocol.Payload payload) throws RemoteException {
+            try {
+                write(op, 0, payload);
+            } catch (IOException e) {
+                throw new ConnectException("Connexion au client perdue", e);
+            }
+        }
+
+        @Override
+        public void receiveMessage(String message) throws RemoteException {
+            callback(ChatProtocol.RECEIVE_MESSAGE, out -> ChatProtocol.writeString(out, message));
+        }
+
+        @Override
+        public void receiveMessages(List<String> messages) throws RemoteException {
+            callback(ChatProtocol.RECEIVE_MESSAGES, out -> ChatProtocol.writeStrings(out, messages));
+        }
+
+        @Override
+        public void receiveChatMessages(List<ChatMessage> messages) throws RemoteException {
+            callback(ChatProtocol.RECEIVE_CHAT_MESSAGES, out -> ChatProtocol.writeMessages(out, messages));
+        }
+
+        @Override
+        public void updateUserList(List<String> users) throws RemoteException {
+            callback(ChatProtocol.UPDATE_USER_LIST, out -> ChatProtocol.writeStrings(out, users));
+        }
+
+        @Override
+        public void updatePresence(List<String> joined, List<String> left, long version) throws RemoteException {
+            callback(ChatProtocol.UPDATE_PRESENCE, out -> {
+                ChatProtocol.writeStrings(out, joined);
+                ChatProtocol.writeStrings(out, left);
+                out.writeLong(version);
+            });
+        }
+
+        @Override
+        public void syncUserList(List<String> users, long version) throws RemoteException {
+            callback(ChatProtocol.SYNC_USER_LIST, out -> {
+                ChatProtocol.writeStrings(out, users);
+                out.writeLong(version);
+            });
+        }
+
+        @Override
+        public void updateRooms(List<String> rooms) throws RemoteException {
+            callback(ChatProtocol.UPDATE_ROOMS, out -> ChatProtocol.writeStrings(out, rooms));
+        }
+    }
+}
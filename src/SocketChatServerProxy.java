@@ -0,0 +1,333 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.rmi.ConnectException;
+import java.rmi.ConnectIOException;
+import java.rmi.RemoteException;
+import java.rmi.ServerException;
+import java.rmi.UnmarshalException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Côté client du transport par socket: un ChatServer qui envoie chaque appel en trame
+// numérotée et attend la réponse correspondante. Un thread de lecture reçoit les réponses
+// et appelle directement le ChatClient local pour les callbacks, comme les threads RMI.
+// Les erreurs reprennent les exceptions RMI (ConnectException, méthode inconnue) pour que
+// RmiCompat et la reconnexion fonctionnent sans distinction de transport.
+public class SocketChatServerProxy implements ChatServer {
+
+    private static final int CONNECT_TIMEOUT_MS = Integer.getInteger("chat.socket.connectTimeoutMs", 5000);
+    private static final long CALL_TIMEOUT_MS = Long.getLong("chat.socket.callTimeoutMs", 15_000);
+
+    private final Socket socket;
+    private final DataOutputStream out;
+    private final Object writeLock = new Object();
+    private final ConcurrentHashMap<Integer, CompletableFuture<DataInput>> calls = new ConcurrentHashMap<>();
+    private final AtomicInteger nextCallId = new AtomicInteger(0);
+    private volatile ChatClient client; // Destinataire des callbacks, fixé à l'enregistrement
+    private volatile boolean closed = false;
+
+    private SocketChatServerProxy(Socket socket) throws IOException {
+        this.socket = socket;
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+
+    // Le thread de lecture ne démarre qu'une fois le proxy entièrement construit
+    public static SocketChatServerProxy connect(String host, int port) throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MS);
+            socket.setTcpNoDelay(true);
+            SocketChatServerProxy proxy = new SocketChatServerProxy(socket);
+            proxy.startReader(new DataInputStream(new BufferedInputStream(socket.getInputStream())));
+            return proxy;
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    private void startReader(DataInputStream in) {
+        Thread reader = new Thread(() -> readLoop(in), "chat-socket-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    private void readLoop(DataInputStream in) {
+        try {
+            while (true) {
+                ChatProtocol.Frame frame = ChatProtocol.readFrame(in);
+                if (frame.op == ChatProtocol.RESPONSE) {
+                    complete(frame);
+                } else {
+                    dispatch(frame.op, frame.data);
+                }
+            }
+        } catch (IOException e) {
+            // Connexion perdue ou trame invalide
+        } finally {
+            // Callback en échec compris: les appels en attente échouent tout de suite au lieu d'expirer
+            close();
+        }
+    }
+
+    private void complete(ChatProtocol.Frame frame) throws IOException {
+        CompletableFuture<DataInput> call = calls.remove(frame.callId);
+        if (call == null) return; // Appel abandonné après son délai
+        byte status = frame.data.readByte();
+        if (status == ChatProtocol.STATUS_OK) {
+            call.complete(frame.data);
+        } else if (status == ChatProtocol.STATUS_UNSUPPORTED) {
+            call.completeExceptionally(new UnmarshalException(ChatProtocol.readString(frame.data)));
+        } else {
+            call.completeExceptionally(new ServerException(ChatProtocol.readString(frame.data)));
+        }
+    }
+
+    private void dispatch(byte op, DataInput in) throws IOException {
+        ChatClient target = client;
+        if (target == null) return;
+        switch (op) {
+            case ChatProtocol.RECEIVE_MESSAGE:
+                target.receiveMessage(ChatProtocol.readString(in));
+                break;
+            case ChatProtocol.RECEIVE_MESSAGES:
+                target.receiveMessages(ChatProtocol.readStrings(in));
+                break;
+            case ChatProtocol.RECEIVE_CHAT_MESSAGES:
+                target.receiveChatMessages(ChatProtocol.readMessages(in));
+                break;
+            case ChatProtocol.UPDATE_USER_LIST:
+                target.updateUserList(ChatProtocol.readStrings(in));
+                break;
+            case ChatProtocol.UPDATE_PRESENCE: {
+                List<String> joined = ChatProtocol.readStrings(in);
+                List<String> left = ChatProtocol.readStrings(in);
+                target.updatePresence(joined, left, in.readLong());
+                break;
+            }
+            case ChatProtocol.SYNC_USER_LIST: {
+                List<String> users = ChatProtocol.readStrings(in);
+                target.syncUserList(users, in.readLong());
+                break;
+            }
+            case ChatProtocol.UPDATE_ROOMS:
+                target.updateRooms(ChatProtocol.readStrings(in));
+                break;
+            default:
+                // Callback d'un serveur plus récent: ignoré
+                break;
+        }
+    }
+
+    public void close() {
+        if (closed) return;
+        closed = true;
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Déjà fermée
+        }
+        ConnectException lost = new ConnectException("Connexion au serveur perdue");
+        for (Integer id : calls.keySet()) {
+            CompletableFuture<DataInput> call = calls.remove(id);
+            if (call != null) {
+                call.completeExceptionally(lost);
+            }
+        }
+    }
+
+    private DataInput call(byte op, ChatProtocol.Payload payload) throws RemoteException {
+        if (closed) throw new ConnectException("Connexion au serveur fermée");
+        int id = nextCallId.incrementAndGet();
+        CompletableFuture<DataInput> result = new CompletableFuture<>();
+        calls.put(id, result);
+        try {
+            synchronized (writeLock) {
+                ChatProtocol.writeFrame(out, op, id, payload);
+            }
+        } catch (IOException e) {
+            calls.remove(id);
+            close();
+            throw new ConnectException("Envoi au serveur impossible", e);
+        }
+        if (closed) {
+            // Fermée entre l'enregistrement de l'appel et l'envoi: la réponse ne viendra pas
+            result.completeExceptionally(new ConnectException("Connexion au serveur perdue"));
+        }
+        try {
+            return result.get(CALL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RemoteException) throw (RemoteException) e.getCause();
+            throw new RemoteException("Échec de l'appel", e.getCause());
+        } catch (TimeoutException e) {
+            calls.remove(id);
+            throw new ConnectIOException("Pas de réponse du serveur après " + CALL_TIMEOUT_MS + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemoteException("Appel interrompu", e);
+        }
+    }
+
+    private static RemoteException malformed(IOException e) {
+        return new UnmarshalException("Réponse illisible", e);
+    }
+
+    @Override
+    public void sendMessage(String name, String message, int clientLamportTime) throws RemoteException {
+        call(ChatProtocol.SEND_MESSAGE, out -> {
+            ChatProtocol.writeString(out, name);
+            ChatProtocol.writeString(out, message);
+            out.writeInt(clientLamportTime);
+        });
+    }
+
+    @Override
+    public void sendChatMessage(ChatMessage message) throws RemoteException {
+        call(ChatProtocol.SEND_CHAT_MESSAGE, message::writeTo);
+    }
+
+    @Override
+    public void sendChatMessages(List<ChatMessage> messages) throws RemoteException {
+        call(ChatProtocol.SEND_CHAT_MESSAGES, out -> ChatProtocol.writeMessages(out, messages));
+    }
+
+    @Override
+    public void registerClient(String name, ChatClient client) throws RemoteException {
+        this.client = client;
+        call(ChatProtocol.REGISTER_CLIENT, out -> ChatProtocol.writeString(out, name));
+    }
+
+    @Override
+    public void unregisterClient(String name) throws RemoteException {
+        call(ChatProtocol.UNREGISTER_CLIENT, out -> ChatProtocol.writeString(out, name));
+    }
+
+    @Override
+    public List<String> getOnlineUsers() throws RemoteException {
+        DataInput in = call(ChatProtocol.GET_ONLINE_USERS, ChatProtocol.EMPTY);
+        try {
+            return ChatProtocol.readStrings(in);
+        } catch (IOException e) {
+            throw malformed(e);
+        }
+    }
+
+    @Override
+    public void sendPrivateMessage(String fromUser, String toUser, String message) throws RemoteException {
+        call(ChatProtocol.SEND_PRIVATE_MESSAGE, out -> {
+            ChatProtocol.writeString(out, fromUser);
+            ChatProtocol.writeString(out, toUser);
+            ChatProtocol.writeString(out, message);
+        });
+    }
+
+    @Override
+    public DeliveryResult sendDirectMessage(ChatMessage message) throws RemoteException {
+        DataInput in = call(ChatProtocol.SEND_DIRECT_MESSAGE, message::writeTo);
+        int result;
+        try {
+            result = in.readUnsignedByte();
+        } catch (IOException e) {
+            throw malformed(e);
+        }
+        if (result >= DeliveryResult.values().length) {
+            throw new UnmarshalException("Résultat d'envoi inconnu: " + result);
+        }
+        return DeliveryResult.values()[result];
+    }
+
+    @Override
+    public boolean isUserOnline(String username) throws RemoteException {
+        return readBoolean(call(ChatProtocol.IS_USER_ONLINE, out -> ChatProtocol.writeString(out, username)));
+    }
+
+    @Override
+    public void requestUserListSync(String name) throws RemoteException {
+        call(ChatProtocol.REQUEST_USER_LIST_SYNC, out -> ChatProtocol.writeString(out, name));
+    }
+
+    @Override
+    public void joinRoom(String name, String room) throws RemoteException {
+        call(ChatProtocol.JOIN_ROOM, out -> {
+            ChatProtocol.writeString(out, name);
+            ChatProtocol.writeString(out, room);
+        });
+    }
+
+    @Override
+    public void leaveRoom(String name, String room) throws RemoteException {
+        call(ChatProtocol.LEAVE_ROOM, out -> {
+            ChatProtocol.writeString(out, name);
+            ChatProtocol.writeString(out, room);
+        });
+    }
+
+    @Override
+    public List<String> getRooms() throws RemoteException {
+        DataInput in = call(ChatProtocol.GET_ROOMS, ChatProtocol.EMPTY);
+        try {
+            return ChatProtocol.readStrings(in);
+        } catch (IOException e) {
+            throw malformed(e);
+        }
+    }
+
+    @Override
+    public List<ChatMessage> getHistory(String room, long fromSeq, int limit) throws RemoteException {
+        DataInput in = call(ChatProtocol.GET_HISTORY, out -> {
+            ChatProtocol.writeString(out, room);
+            out.writeLong(fromSeq);
+            out.writeInt(limit);
+        });
+        try {
+            return ChatProtocol.readMessages(in);
+        } catch (IOException e) {
+            throw malformed(e);
+        }
+    }
+
+    @Override
+    public long openSession(String name, ChatClient client) throws RemoteException {
+        this.client = client;
+        DataInput in = call(ChatProtocol.OPEN_SESSION, out -> ChatProtocol.writeString(out, name));
+        try {
+            return in.readLong();
+        } catch (IOException e) {
+            throw malformed(e);
+        }
+    }
+
+    @Override
+    public boolean resumeSession(String name, long token, long lastSeq, ChatClient client) throws RemoteException {
+        this.client = client;
+        return readBoolean(call(ChatProtocol.RESUME_SESSION, out -> {
+            ChatProtocol.writeString(out, name);
+            out.writeLong(token);
+            out.writeLong(lastSeq);
+        }));
+    }
+
+    @Override
+    public boolean heartbeat(String name) throws RemoteException {
+        return readBoolean(call(ChatProtocol.HEARTBEAT, out -> ChatProtocol.writeString(out, name)));
+    }
+
+    private static boolean readBoolean(DataInput in) throws RemoteException {
+        try {
+            return in.readBoolean();
+        } catch (IOException e) {
+            throw malformed(e);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+import javax.swing.*;
+import java.awt.*;
+
+// Fenêtre de statistiques du client: indique si la lenteur vient du réseau, du serveur ou de
+// l'interface. Le heartbeat ne fait presque rien côté serveur: son aller-retour mesure le
+// réseau, l'écart avec l'aller-retour d'un envoi donne le temps passé dans le serveur.
+public class StatsDialog extends JDialog {
+
+    private static final int REFRESH_MS = 1000;
+    // Seuils au-delà desquels un maillon est désigné comme responsable
+    private static final long SLOW_EDT_MICROS = 100_000;
+    private static final long SLOW_NETWORK_MICROS = 150_000;
+    private static final long SLOW_SERVER_MICROS = 200_000;
+
+    private final ClientMetrics metrics;
+    private final JLabel network = new JLabel();
+    private final JLabel send = new JLabel();
+    private final JLabel edt = new JLabel();
+    private final JLabel append = new JLabel();
+    private final JLabel document = new JLabel();
+    private final JLabel verdict = new JLabel();
+    private final Timer refreshTimer = new Timer(REFRESH_MS, e -> refresh());
+
+    private StatsDialog(JFrame owner, ClientMetrics metrics) {
+        super(owner, "📊 Statistiques", false);
+        this.metrics = metrics;
+    }
+
+    // Contenu et écouteurs posés une fois le dialogue entièrement construit
+    public static StatsDialog create(JFrame owner, ClientMetrics metrics) {
+        StatsDialog dialog = new StatsDialog(owner, metrics);
+        dialog.buildContent(owner);
+        return dialog;
+    }
+
+    private void buildContent(JFrame owner) {
+        JPanel rows = new JPanel(new GridLayout(0, 2, 12, 6));
+        rows.setBorder(BorderFactory.createEmptyBorder(12, 15, 12, 15));
+        addRow(rows, "🌐 Réseau (heartbeat)", network);
+        addRow(rows, "📤 Envoi (réseau + serveur)", send);
+        addRow(rows, "🖥️ Retard de l'interface", edt);
+        addRow(rows, "📝 Affichage des messages", append);
+        addRow(rows, "📄 Taille des discussions", document);
+
+        verdict.setFont(new Font(Font.SANS_SERIF, Font.BOLD, 13));
+        verdict.setBorder(BorderFactory.createEmptyBorder(0, 15, 10, 15));
+
+        JButton resetButton = new JButton("🔄 Réinitialiser");
+        resetButton.addActionListener(e -> {
+            metrics.resetStatistics();
+            refresh();
+        });
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttons.add(resetButton);
+
+        JPanel south = new JPanel(new BorderLayout());
+        south.add(verdict, BorderLayout.CENTER);
+        south.add(buttons, BorderLayout.SOUTH);
+
+        add(rows, BorderLayout.CENTER);
+        add(south, BorderLayout.SOUTH);
+        pack();
+        setLocationRelativeTo(owner);
+    }
+
+    private static void addRow(JPanel rows, String title, JLabel value) {
+        rows.add(new JLabel(title));
+        rows.add(value);
+    }
+
+    @Override
+    public void setVisible(boolean visible) {
+        if (visible) {
+            refresh();
+            refreshTimer.start();
+        } else {
+            refreshTimer.stop();
+        }
+        super.setVisible(visible);
+    }
+
+    private void refresh() {
+        network.setText(percentiles(metrics.getHeartbeatRtt()));
+        send.setText(percentiles(metrics.getSendRtt()));
+        edt.setText(percentiles(metrics.getEdtLag()));
+        append.setText(percentiles(metrics.getAppend()));
+        document.setText(metrics.getDocumentLength() + " caractères");
+        verdict.setText(diagnose());
+    }
+
+    private String diagnose() {
+        if (metrics.getEdtLag().getPercentile(99) > SLOW_EDT_MICROS) {
+            return "🐢 L'interface est surchargée (affichage trop long)";
+        }
+        long network = metrics.getHeartbeatRtt().getPercentile(50);
+        if (network > SLOW_NETWORK_MICROS) {
+            return "🐢 Le réseau est lent";
+        }
+        if (metrics.getSendRtt().getCount() > 0
+                && metrics.getSendRtt().getPercentile(50) - network > SLOW_SERVER_MICROS) {
+            return "🐢 Le serveur répond lentement";
+        }
+        return "✅ Aucun ralentissement détecté";
+    }
+
+    private static String percentiles(LatencyHistogram histogram) {
+        if (histogram.getCount() == 0) return "—";
+        return "médiane " + format(histogram.getPercentile(50)) + ", p99 " + format(histogram.getPercentile(99));
+    }
+
+    private static String format(long micros) {
+        return micros >= 1000 ? String.format("%.1f ms", micros / 1000.0) : micros + " µs";
+    }
+}
@@ -0,0 +1,30 @@
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+
+// Horodatage "HH:mm" recalculé une fois par minute au lieu d'une fois par message
+public class TimestampCache {
+
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("HH:mm");
+
+    private static final class Cached {
+        final long minute;
+        final String text;
+
+        Cached(long minute, String text) {
+            this.minute = minute;
+            this.text = text;
+        }
+    }
+
+    private volatile Cached cached = new Cached(Long.MIN_VALUE, "");
+
+    public String now() {
+        long minute = System.currentTimeMillis() / 60_000L;
+        Cached current = cached;
+        if (current.minute != minute) {
+            current = new Cached(minute, LocalTime.now().format(FORMATTER));
+            cached = current;
+        }
+        return current.text;
+    }
+}
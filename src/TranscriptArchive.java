@@ -0,0 +1,67 @@
+import java.util.ArrayDeque;
+import java.util.List;
+
+// Historique des messages sortis du document: tampon circulaire borné, pour que
+// la mémoire reste constante quelle que soit la durée de la session.
+public class TranscriptArchive {
+
+    private final ChatTranscript.Entry[] ring;
+    private int head = 0; // Index du plus ancien
+    private int size = 0;
+
+    public TranscriptArchive(int capacity) {
+        this.ring = new ChatTranscript.Entry[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Ajoute l'entrée la plus récente; la plus ancienne est oubliée si le tampon est plein
+    public void addNewest(ChatTranscript.Entry entry) {
+        if (ring.length == 0) return;
+        if (size == ring.length) {
+            ring[head] = entry;
+            head = (head + 1) % ring.length;
+        } else {
+            ring[(head + size) % ring.length] = entry;
+            size++;
+        }
+    }
+
+    public boolean contains(ChatTranscript.Entry entry) {
+        for (int i = 0; i < size; i++) {
+            if (ring[(head + i) % ring.length] == entry) return true;
+        }
+        return false;
+    }
+
+    // Place entries, du plus ancien au plus récent, avant les newerCount entrées les plus
+    // récentes; si le tampon déborde, ce sont toujours les plus anciennes qui sont oubliées
+    public void insertBeforeNewest(int newerCount, List<ChatTranscript.Entry> entries) {
+        ArrayDeque<ChatTranscript.Entry> newer = new ArrayDeque<>();
+        for (int i = 0; i < newerCount && size > 0; i++) {
+            newer.addFirst(pollNewest());
+        }
+        for (ChatTranscript.Entry entry : entries) {
+            addNewest(entry);
+        }
+        for (ChatTranscript.Entry entry : newer) {
+            addNewest(entry);
+        }
+    }
+
+    // Retire l'entrée la plus récente, pour la réafficher en haut du document
+    public ChatTranscript.Entry pollNewest() {
+        if (size == 0) return null;
+        int index = (head + size - 1) % ring.length;
+        ChatTranscript.Entry entry = ring[index];
+        ring[index] = null;
+        size--;
+        return entry;
+    }
+}
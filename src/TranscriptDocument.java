@@ -0,0 +1,55 @@
+import javax.swing.text.*;
+import java.util.ArrayList;
+import java.util.List;
+
+// Document de la zone de discussion: un lot de messages est inséré en une seule
+// modification (un seul DocumentEvent, une seule relayout) au lieu de deux
+// insertString par message.
+public class TranscriptDocument extends DefaultStyledDocument {
+
+    public TranscriptDocument() {
+        super();
+    }
+
+    // Contexte partagé entre plusieurs documents: les styles n'y sont enregistrés qu'une fois
+    public TranscriptDocument(StyleContext styles) {
+        super(styles);
+    }
+
+    public void appendEntries(List<ChatTranscript.Entry> entries) throws BadLocationException {
+        if (entries.isEmpty()) return;
+        int offset = getLength();
+        AttributeSet paragraphAttrs = getParagraphElement(offset).getAttributes();
+
+        List<ElementSpec> specs = new ArrayList<>(entries.size() * 4 + 2);
+        if (offset > 0) {
+            // Comme insertString après un "\n": on repart d'un nouveau paragraphe
+            specs.add(new ElementSpec(null, ElementSpec.EndTagType));
+            specs.add(new ElementSpec(paragraphAttrs, ElementSpec.StartTagType));
+        }
+        for (ChatTranscript.Entry entry : entries) {
+            char[] prefix = ("[" + entry.timestamp + "] ").toCharArray();
+            char[] body = entry.body().toCharArray();
+            specs.add(new ElementSpec(entry.timestampAttrs, ElementSpec.ContentType, prefix, 0, prefix.length));
+            specs.add(new ElementSpec(entry.messageAttrs, ElementSpec.ContentType, body, 0, body.length));
+            // Chaque message termine son paragraphe et en ouvre un nouveau
+            specs.add(new ElementSpec(null, ElementSpec.EndTagType));
+            specs.add(new ElementSpec(paragraphAttrs, ElementSpec.StartTagType));
+        }
+        // Le dernier paragraphe ouvert reprend le "\n" final du document: même
+        // directions que celles calculées par insertString pour ce cas
+        specs.get(specs.size() - 1).setDirection(offset > 0
+                ? ElementSpec.JoinNextDirection
+                : ElementSpec.JoinFractureDirection);
+        insert(offset, specs.toArray(new ElementSpec[0]));
+
+        // Positions des marques d'état, suivies ensuite malgré les suppressions en tête
+        int start = offset;
+        for (ChatTranscript.Entry entry : entries) {
+            if (entry.status != null) {
+                entry.statusPosition = createPosition(start + entry.statusOffset());
+            }
+            start += entry.length();
+        }
+    }
+}
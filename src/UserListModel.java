@@ -0,0 +1,52 @@
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+// Modèle trié de la liste des utilisateurs: chaque arrivée ou départ ne produit
+// qu'un seul événement de liste, au lieu de reconstruire tout le modèle.
+public class UserListModel extends DefaultListModel<String> {
+
+    private static final Comparator<String> ORDER =
+            String.CASE_INSENSITIVE_ORDER.thenComparing(Comparator.naturalOrder());
+
+    public void replaceAll(Collection<String> users) {
+        List<String> sorted = new ArrayList<>(users);
+        sorted.sort(ORDER);
+        clear();
+        addAll(sorted);
+    }
+
+    public void addUser(String user) {
+        int index = indexOfUser(user);
+        if (index < 0) {
+            add(-index - 1, user);
+        }
+    }
+
+    public void removeUser(String user) {
+        int index = indexOfUser(user);
+        if (index >= 0) {
+            remove(index);
+        }
+    }
+
+    // Recherche dichotomique, comme Collections.binarySearch
+    private int indexOfUser(String user) {
+        int low = 0;
+        int high = getSize() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = ORDER.compare(getElementAt(mid), user);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+}
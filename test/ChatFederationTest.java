@@ -0,0 +1,241 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.rmi.NoSuchObjectException;
+import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.ExportException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+// Trois nœuds fédérés dans la même JVM, chacun avec son registre RMI sur un port libre
+class ChatFederationTest {
+
+    private static final int NODES = 3;
+    private static final long TIMEOUT_MS = 15_000;
+
+    private final List<String> addresses = new ArrayList<>();
+    private final Node[] nodes = new Node[NODES];
+
+    private static final class Node {
+        Registry registry;
+        ChatServerImpl server;
+        ChatFederation federation;
+    }
+
+    // Client en mémoire: les livraisons l'appellent directement, sans export RMI
+    private static final class Client implements ChatClient {
+        final List<ChatMessage> received = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void receiveMessage(String message) {
+        }
+
+        @Override
+        public void receiveChatMessages(List<ChatMessage> messages) {
+            received.addAll(messages);
+        }
+
+        @Override
+        public void updateUserList(List<String> users) {
+        }
+
+        @Override
+        public void updatePresence(List<String> joined, List<String> left, long version) {
+        }
+
+        List<String> bodies(MessageKind kind) {
+            List<String> bodies = new ArrayList<>();
+            for (ChatMessage message : received) {
+                if (message.getKind() == kind) {
+                    bodies.add(message.getBody());
+                }
+            }
+            return bodies;
+        }
+    }
+
+    @BeforeEach
+    void startNodes() throws IOException, InterruptedException {
+        for (int i = 0; i < NODES; i++) {
+            try (ServerSocket probe = new ServerSocket(0)) {
+                addresses.add("localhost:" + probe.getLocalPort());
+            }
+        }
+        for (int i = 0; i < NODES; i++) {
+            startNode(i);
+        }
+    }
+
+    @AfterEach
+    void stopNodes() throws NoSuchObjectException {
+        for (int i = 0; i < NODES; i++) {
+            if (nodes[i] != null) {
+                stopNode(i);
+            }
+        }
+    }
+
+    @Test
+    void roomMessagesHaveSameOrderOnEveryNode() throws Exception {
+        int perNode = 50;
+        Client[] clients = new Client[NODES];
+        for (int i = 0; i < NODES; i++) {
+            clients[i] = register(i, "user" + i);
+        }
+        List<Thread> senders = new ArrayList<>();
+        for (int i = 0; i < NODES; i++) {
+            ChatServerImpl server = nodes[i].server;
+            String name = "user" + i;
+            senders.add(Thread.ofVirtual().start(() -> {
+                for (int k = 0; k < perNode; k++) {
+                    try {
+                        server.sendChatMessage(ChatMessage.publicMessage(name, name + "-" + k, 0));
+                    } catch (RemoteException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            }));
+        }
+        for (Thread sender : senders) {
+            sender.join();
+        }
+        for (Client client : clients) {
+            await(() -> client.bodies(MessageKind.PUBLIC).size() == NODES * perNode);
+        }
+
+        List<String> order = clients[0].bodies(MessageKind.PUBLIC);
+        for (Client client : clients) {
+            assertEquals(order, client.bodies(MessageKind.PUBLIC));
+        }
+        // Les messages d'un même émetteur gardent leur ordre d'envoi
+        for (int i = 0; i < NODES; i++) {
+            String prefix = "user" + i + "-";
+            List<String> own = order.stream().filter(body -> body.startsWith(prefix)).toList();
+            for (int k = 0; k < perNode; k++) {
+                assertEquals(prefix + k, own.get(k));
+            }
+        }
+    }
+
+    @Test
+    void directMessageAcrossNodes() throws Exception {
+        register(0, "alice");
+        Client bob = register(1, "bob");
+        await(() -> isOnline(0, "bob"));
+
+        assertEquals(DeliveryResult.DELIVERED, sendDirect(0, "alice", "bob", "en ligne"));
+        await(() -> bob.bodies(MessageKind.PRIVATE).contains("en ligne"));
+
+        nodes[1].server.unregisterClient("bob");
+        await(() -> !isOnline(0, "bob"));
+        assertEquals(DeliveryResult.QUEUED_OFFLINE, sendDirect(0, "alice", "bob", "hors ligne"));
+
+        // Remis au nœud où bob se reconnecte
+        Client returning = register(2, "bob");
+        await(() -> returning.bodies(MessageKind.PRIVATE).contains("hors ligne"));
+
+        assertEquals(DeliveryResult.UNKNOWN_USER, sendDirect(0, "alice", "personne", "perdu"));
+    }
+
+    @Test
+    void restartedNodeIsResynced() throws Exception {
+        // Nom dont le nœud 2 tient l'annuaire, connecté au nœud 0
+        HashRing ring = new HashRing(addresses);
+        String owned = "user0";
+        for (int i = 1; !ring.ownerOf(owned).equals(addresses.get(2)); i++) {
+            owned = "user" + i;
+        }
+        String user = owned;
+        register(0, user);
+        register(2, "ghost");
+        await(() -> isOnline(1, user));
+        await(() -> nodes[0].federation.getRemoteUsers().contains("ghost"));
+
+        stopNode(2);
+        startNode(2);
+
+        // Le nœud redémarré réapprend où est connecté user; ghost n'existe plus nulle part
+        await(() -> isOnline(1, user));
+        assertEquals(DeliveryResult.DELIVERED, sendDirect(1, "carol", user, "après redémarrage"));
+        await(() -> !nodes[0].federation.getRemoteUsers().contains("ghost"));
+        await(() -> !nodes[1].federation.getRemoteUsers().contains("ghost"));
+    }
+
+    private void startNode(int index) throws RemoteException, InterruptedException {
+        Node node = new Node();
+        String address = addresses.get(index);
+        List<String> peers = new ArrayList<>(addresses);
+        peers.remove(address);
+        node.registry = createRegistry(Integer.parseInt(address.substring(address.lastIndexOf(':') + 1)));
+        OfflineMailbox mailbox = new MemoryMailbox();
+        node.server = new ChatServerImpl(Executors.newVirtualThreadPerTaskExecutor(), null, mailbox);
+        node.server.start();
+        node.federation = ChatFederation.create(address, peers, node.server, mailbox,
+                Executors.newVirtualThreadPerTaskExecutor());
+        node.server.setFederation(node.federation);
+        node.registry.rebind("ChatPeer", node.federation);
+        node.federation.start();
+        nodes[index] = node;
+    }
+
+    // Le port d'un registre retiré n'est pas toujours libéré aussitôt
+    private static Registry createRegistry(int port) throws RemoteException, InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (true) {
+            try {
+                return LocateRegistry.createRegistry(port);
+            } catch (ExportException e) {
+                if (System.currentTimeMillis() > deadline) throw e;
+                Thread.sleep(50);
+            }
+        }
+    }
+
+    // Arrêt complet: le port du registre peut être repris par un nouveau nœud
+    private void stopNode(int index) throws NoSuchObjectException {
+        Node node = nodes[index];
+        nodes[index] = null;
+        node.server.shutdown();
+        UnicastRemoteObject.unexportObject(node.server, true);
+        UnicastRemoteObject.unexportObject(node.registry, true);
+    }
+
+    private Client register(int index, String name) throws RemoteException {
+        Client client = new Client();
+        nodes[index].server.registerClient(name, client);
+        return client;
+    }
+
+    private DeliveryResult sendDirect(int index, String from, String to, String body) throws RemoteException {
+        return nodes[index].server.sendDirectMessage(ChatMessage.privateMessage(from, to, body, 0));
+    }
+
+    // Un pair pas encore joignable compte comme une réponse négative
+    private boolean isOnline(int index, String user) {
+        try {
+            return nodes[index].server.isUserOnline(user);
+        } catch (RemoteException e) {
+            return false;
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) fail("Condition non atteinte en " + TIMEOUT_MS + " ms");
+            Thread.sleep(20);
+        }
+    }
+}
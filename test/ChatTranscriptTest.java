@@ -0,0 +1,91 @@
+import org.junit.jupiter.api.Test;
+
+import javax.swing.*;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Messages manqués (delta du serveur) placés entre le cache local et les messages en direct
+class ChatTranscriptTest {
+
+    // Avec une vue qui suit le bas, le document est réduit au-delà de MAX_MESSAGES, sinon au-delà
+    // du double: les nombres de messages choisis donnent le même état dans les deux cas
+    private static final int MAX_MESSAGES = 4;
+
+    private final JTextPane textPane = new JTextPane();
+    private final ChatTranscript transcript =
+            new ChatTranscript(textPane, new JScrollPane(textPane), MAX_MESSAGES, 100);
+
+    @Test
+    void deltaBetweenShownMessagesIsInsertedInPlace() throws Exception {
+        onEdt(() -> {
+            transcript.appendAll(entries("cache", 2));
+            transcript.appendAll(entries("live", 2));
+            transcript.insertBeforeNewest(2, entries("delta", 2));
+            assertEquals("cache0 cache1 delta0 delta1 live0 live1", text());
+        });
+    }
+
+    @Test
+    void deltaGoesToArchiveBeforeArchivedLiveMessages() throws Exception {
+        onEdt(() -> {
+            transcript.appendAll(entries("cache", 3));
+            List<ChatTranscript.Entry> live = entries("live", 12);
+            for (ChatTranscript.Entry entry : live) {
+                transcript.append(entry);
+            }
+            int archived = transcript.getArchivedCount();
+            assertTrue(transcript.getShownCount() < live.size());
+            List<ChatTranscript.Entry> delta = entries("delta", 2);
+            transcript.insertBeforeNewest(live.size(), delta);
+
+            // Rien n'est perdu: le delta est archivé, puis réaffiché à sa place
+            assertEquals(archived + delta.size(), transcript.getArchivedCount());
+            assertTrue(transcript.reveal(delta.get(0)));
+            assertEquals("delta0 delta1 live0 live1 live2 live3 live4 live5 live6 live7 live8 live9 live10 live11", text());
+        });
+    }
+
+    @Test
+    void deltaGoesToTopOfDocumentWhenOnlyCachedMessagesAreArchived() throws Exception {
+        onEdt(() -> {
+            transcript.appendAll(entries("cache", 6));
+            transcript.appendAll(entries("live", 3));
+            assertEquals("live0 live1 live2", text());
+            int archived = transcript.getArchivedCount();
+            List<ChatTranscript.Entry> delta = entries("delta", 2);
+            transcript.insertBeforeNewest(3, delta);
+
+            // Une place libre dans le document: le plus récent y va, l'autre juste avant dans l'archive
+            assertEquals("delta1 live0 live1 live2", text());
+            assertEquals(archived + 1, transcript.getArchivedCount());
+            assertTrue(transcript.reveal(delta.get(0)));
+            assertEquals("delta0 delta1 live0 live1 live2", text());
+        });
+    }
+
+    private static List<ChatTranscript.Entry> entries(String prefix, int count) {
+        List<ChatTranscript.Entry> entries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            entries.add(new ChatTranscript.Entry("t", prefix + i, null, null));
+        }
+        return entries;
+    }
+
+    // Corps des messages affichés, dans l'ordre du document
+    private String text() {
+        return textPane.getText().replace("[t] ", "").trim().replace('\n', ' ');
+    }
+
+    private static void onEdt(Runnable test) throws InterruptedException {
+        try {
+            SwingUtilities.invokeAndWait(test);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof Error) throw (Error) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,130 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Format sur disque de la boîte hors ligne: reprise, limite par destinataire et compactage
+class ShardedMailboxTest {
+
+    // Un seul shard: tous les destinataires partagent le même fichier
+    private static final int SHARDS = 1;
+    private static final long COMPACT_MIN_BYTES = Long.getLong("chat.mailbox.compactMinBytes", 4 * 1024 * 1024);
+    private static final String PADDING = "x".repeat(200);
+
+    private Path directory;
+    private ShardedMailbox mailbox;
+
+    @BeforeEach
+    void open() throws IOException {
+        directory = Files.createTempDirectory("chat-mailbox-test");
+        mailbox = ShardedMailbox.open(directory, SHARDS);
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        mailbox.close();
+    }
+
+    @Test
+    void tornTailRecordIsDroppedOnReopen() throws IOException {
+        store("bob", 0, 3);
+        reopen(file -> file.truncate(file.size() - 5));
+
+        assertEquals(List.of("m0", "m1"), bodies(mailbox.drain("bob")));
+        // Les enregistrements suivants repartent de la fin tronquée
+        store("bob", 3, 1);
+        assertEquals(List.of("m3"), bodies(mailbox.drain("bob")));
+    }
+
+    @Test
+    void perUserCapSurvivesReopen() throws IOException {
+        int extra = 10;
+        store("bob", 0, OfflineMailbox.MAX_PER_USER + extra);
+        reopen(file -> { });
+
+        List<String> drained = bodies(mailbox.drain("bob"));
+        assertEquals(OfflineMailbox.MAX_PER_USER, drained.size());
+        assertEquals("m" + extra, drained.get(0));
+        assertEquals("m" + (OfflineMailbox.MAX_PER_USER + extra - 1), drained.get(drained.size() - 1));
+    }
+
+    @Test
+    void compactionKeepsNewestMessagesInOrder() throws IOException {
+        // Un destinataire qui ne se connecte jamais: tout ce qui dépasse MAX_PER_USER est périmé
+        int count = 8 * OfflineMailbox.MAX_PER_USER;
+        mailbox.markKnown("idle");
+        store("ghost", 0, count, PADDING);
+        assertTrue(Files.size(shardFile()) < (long) count * PADDING.length() / 2);
+
+        reopen(file -> { });
+        assertTrue(mailbox.isKnown("idle"));
+        List<String> drained = bodies(mailbox.drain("ghost"));
+        assertEquals(OfflineMailbox.MAX_PER_USER, drained.size());
+        for (int i = 0; i < drained.size(); i++) {
+            assertEquals("m" + (count - OfflineMailbox.MAX_PER_USER + i), drained.get(i));
+        }
+    }
+
+    @Test
+    void failedCompactionLeavesShardUsable() throws IOException {
+        // Un répertoire à la place du fichier temporaire fait échouer chaque compactage
+        Path temporary = directory.resolve(shardFile().getFileName() + ".tmp");
+        Files.createDirectory(temporary);
+        int count = 3 * OfflineMailbox.MAX_PER_USER;
+        store("ghost", 0, count, PADDING);
+        assertTrue(Files.size(shardFile()) > (long) count * PADDING.length());
+
+        List<String> drained = bodies(mailbox.drain("ghost"));
+        assertEquals(OfflineMailbox.MAX_PER_USER, drained.size());
+        assertEquals("m" + (count - OfflineMailbox.MAX_PER_USER), drained.get(0));
+        assertEquals("m" + (count - 1), drained.get(drained.size() - 1));
+
+        // Le shard reste cohérent à la reprise, et le compactage suivant aboutit
+        store("bob", 0, 2);
+        reopen(file -> { });
+        Files.delete(temporary);
+        store("bob", 2, 1);
+        assertTrue(Files.size(shardFile()) < COMPACT_MIN_BYTES);
+        assertEquals(List.of("m0", "m1", "m2"), bodies(mailbox.drain("bob")));
+    }
+
+    private interface FileEdit {
+        void apply(FileChannel file) throws IOException;
+    }
+
+    // Ferme la boîte, modifie le fichier du shard comme après un arrêt brutal, puis la rouvre
+    private void reopen(FileEdit edit) throws IOException {
+        mailbox.close();
+        try (FileChannel file = FileChannel.open(shardFile(), StandardOpenOption.WRITE)) {
+            edit.apply(file);
+        }
+        mailbox = ShardedMailbox.open(directory, SHARDS);
+    }
+
+    private Path shardFile() {
+        return directory.resolve("shard-000.box");
+    }
+
+    private void store(String user, int first, int count) throws IOException {
+        store(user, first, count, "");
+    }
+
+    private void store(String user, int first, int count, String padding) throws IOException {
+        for (int i = first; i < first + count; i++) {
+            mailbox.store(user, ChatMessage.privateMessage("alice", user, "m" + i + padding, i));
+        }
+    }
+
+    private static List<String> bodies(List<ChatMessage> messages) {
+        return messages.stream().map(message -> message.getBody().replace("x", "")).toList();
+    }
+}
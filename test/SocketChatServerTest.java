@@ -0,0 +1,99 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.net.Socket;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// Une longueur annoncée par le client ne doit jamais décider seule d'une allocation
+class SocketChatServerTest {
+
+    private SocketChatServer socketServer;
+
+    @BeforeEach
+    void start() throws IOException {
+        // Aucune requête ne doit atteindre le serveur: toute méthode appelée échoue
+        ChatServer server = (ChatServer) Proxy.newProxyInstance(ChatServer.class.getClassLoader(),
+                new Class<?>[] {ChatServer.class}, (proxy, method, args) -> {
+                    throw new AssertionError("Requête invalide transmise au serveur: " + method.getName());
+                });
+        socketServer = new SocketChatServer(server, 0);
+        socketServer.start();
+    }
+
+    @AfterEach
+    void stop() throws IOException {
+        socketServer.close();
+    }
+
+    @Test
+    void stringLongerThanFrameClosesConnection() throws IOException {
+        try (Socket socket = connect()) {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            // Trame de 20 octets annonçant une chaîne de 2 Go
+            out.writeInt(20);
+            out.writeByte(ChatProtocol.REGISTER_CLIENT);
+            out.writeInt(1);
+            out.writeInt(Integer.MAX_VALUE);
+            out.write(new byte[11]);
+            out.flush();
+            assertClosed(socket);
+        }
+    }
+
+    @Test
+    void countLargerThanFrameClosesConnection() throws IOException {
+        try (Socket socket = connect()) {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeInt(9);
+            out.writeByte(ChatProtocol.SEND_CHAT_MESSAGES);
+            out.writeInt(1);
+            out.writeInt(Integer.MAX_VALUE);
+            out.flush();
+            assertClosed(socket);
+        }
+    }
+
+    @Test
+    void oversizedFrameClosesConnection() throws IOException {
+        try (Socket socket = connect()) {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeInt(ChatProtocol.MAX_REQUEST_BYTES + 1);
+            out.flush();
+            assertClosed(socket);
+        }
+    }
+
+    // Sous le tas réduit des tests, une allocation de 2 Go échouerait en OutOfMemoryError
+    @Test
+    void lyingLengthIsRejectedBeforeAllocation() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(9);
+        out.writeByte(ChatProtocol.REGISTER_CLIENT);
+        out.writeInt(1);
+        out.writeInt(Integer.MAX_VALUE);
+        ChatProtocol.Frame frame = ChatProtocol.readFrame(
+                new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), ChatProtocol.MAX_REQUEST_BYTES);
+        assertThrows(IOException.class, () -> ChatProtocol.readString(frame.data));
+    }
+
+    private Socket connect() throws IOException {
+        Socket socket = new Socket("localhost", socketServer.getPort());
+        socket.setSoTimeout(5000);
+        return socket;
+    }
+
+    // Ni réponse ni attente: le serveur ferme la connexion
+    private static void assertClosed(Socket socket) throws IOException {
+        assertEquals(-1, new DataInputStream(socket.getInputStream()).read());
+    }
+}